@@ -0,0 +1,159 @@
+package com.yf833.bench;
+
+import com.yf833.BankersAllocator;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+
+// stress test for BankersAllocator: every thread declares a random claim and keeps acquiring random amounts of random
+// resources and releasing them, closing its claim and declaring a new one now and then; the run fails if a thread
+// throws, if the threads stop making progress (a deadlock), or if units are lost
+//
+// usage: AllocatorStress [--threads 16] [--resources 4] [--units 10] [--tightness 0.6] [--seconds 5] [--seed 1]
+//                        [--virtual]
+// --virtual runs the clients on virtual threads (needs a JDK that has them)
+public class AllocatorStress {
+
+    ///// MAIN /////
+    public static void main(String[] args) throws Exception {
+
+        int num_threads = 16;
+        int num_resources = 4;
+        int units_each = 10;
+        double tightness = 0.6;
+        int seconds = 5;
+        long seed = 1;
+        boolean virtual = false;
+
+        for(int i=0; i<args.length; i++){
+            if(args[i].equals("--virtual")){
+                virtual = true;
+                continue;
+            }
+            String value = args[++i];
+            if(args[i-1].equals("--threads")){
+                num_threads = Integer.parseInt(value);
+            }else if(args[i-1].equals("--resources")){
+                num_resources = Integer.parseInt(value);
+            }else if(args[i-1].equals("--units")){
+                units_each = Integer.parseInt(value);
+            }else if(args[i-1].equals("--tightness")){
+                tightness = Double.parseDouble(value);
+            }else if(args[i-1].equals("--seconds")){
+                seconds = Integer.parseInt(value);
+            }else if(args[i-1].equals("--seed")){
+                seed = Long.parseLong(value);
+            }else{
+                throw new IllegalArgumentException("Unknown option " + args[i-1]);
+            }
+        }
+
+        int[] units = new int[num_resources];
+        for(int j=0; j<num_resources; j++){
+            units[j] = units_each;
+        }
+        final BankersAllocator allocator = new BankersAllocator(units);
+        final int max_claim = Math.max(1, (int) Math.round(tightness * units_each));
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final AtomicLong operations = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread[] threads = new Thread[num_threads];
+        for(int t=0; t<num_threads; t++){
+            final Random random = new Random(seed * 31 + t);
+            Runnable client = new Runnable() {
+                public void run() {
+                    try{
+                        while(System.nanoTime() < deadline && failure.get() == null){
+                            runClient(allocator, random, max_claim, operations);
+                        }
+                    }catch(Throwable e){
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t] = virtual ? startVirtual(client) : new Thread(client, "client-" + t);
+            if(!virtual){
+                threads[t].start();
+            }
+        }
+
+        // watchdog: every client finishes its claim in bounded time, so a full second without a single operation
+        // means the allocator let the clients deadlock
+        long last = -1;
+        while(System.nanoTime() < deadline && failure.get() == null){
+            Thread.sleep(1000);
+            long now = operations.get();
+            if(now == last){
+                failure.compareAndSet(null, new IllegalStateException("no progress for a second: deadlock?"));
+            }
+            last = now;
+        }
+        for(Thread thread : threads){
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            if(thread.isAlive()){
+                failure.compareAndSet(null, new IllegalStateException(thread.getName() + " did not finish"));
+            }
+        }
+
+        for(int j=0; j<num_resources; j++){
+            if(failure.get() == null && allocator.available(j) != units[j]){
+                failure.set(new IllegalStateException("resource " + j + " ends with " + allocator.available(j) + " of " + units[j] + " units available"));
+            }
+        }
+
+        System.out.println("threads: " + num_threads + (virtual ? " (virtual)" : "") + "  resources: " + num_resources + "  units: " + units_each + "  max claim: " + max_claim);
+        System.out.println("operations: " + operations.get() + "  (" + (operations.get() / Math.max(1, seconds)) + "/s)");
+        System.out.println("fast grants: " + allocator.fast_grants.sum() + "  slow grants: " + allocator.slow_grants.sum() + "  waits: " + allocator.waits.sum());
+        if(failure.get() != null){
+            System.out.println("FAILED: " + failure.get());
+            failure.get().printStackTrace();
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+
+    // one client lifetime: declare a claim, take and give back units within it a number of times, then close it
+    private static void runClient(BankersAllocator allocator, Random random, int max_claim, AtomicLong operations) throws InterruptedException {
+        int m = allocator.numResources();
+        int[] claim = new int[m];
+        for(int j=0; j<m; j++){
+            claim[j] = random.nextInt(max_claim + 1);
+        }
+        BankersAllocator.Claim c = allocator.declareClaim(claim);
+
+        int steps = 1 + random.nextInt(20);
+        for(int s=0; s<steps; s++){
+            int r = random.nextInt(m);
+            int room = claim[r] - c.held(r);
+            if(room > 0 && random.nextInt(3) != 0){
+                int units = 1 + random.nextInt(room);
+                if(random.nextBoolean()){
+                    c.acquire(r, units);
+                }else{
+                    c.tryAcquire(r, units, 1, TimeUnit.MILLISECONDS);
+                }
+            }else if(c.held(r) > 0){
+                c.release(r, 1 + random.nextInt(c.held(r)));
+            }
+            operations.incrementAndGet();
+        }
+        c.close();
+        operations.incrementAndGet();
+    }
+
+
+    // Thread.ofVirtual().start(task), looked up by reflection so the harness still builds on JDKs without it
+    private static Thread startVirtual(Runnable task) throws Exception {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Method start = Class.forName("java.lang.Thread$Builder").getMethod("start", Runnable.class);
+        return (Thread) start.invoke(builder, task);
+    }
+
+}
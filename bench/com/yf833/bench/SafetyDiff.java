@@ -0,0 +1,371 @@
+package com.yf833.bench;
+
+import com.yf833.IntMatrix;
+import com.yf833.SafetyCache;
+import com.yf833.SafetyCheck;
+import com.yf833.SortedSafetyCheck;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+
+// differential test for the banker's safety checks: random claims, grants, releases, retirements and wholesale
+// replacements (reindex) are applied to one allocation and claims matrix shared by SafetyCheck, SortedSafetyCheck and
+// both of them with a SafetyCache, and every request is checked by all four and by a plain sweep written out here
+// (no bounds, no index, no cache). the run fails at the first request where any two of them name a different
+// firstUnsafeResource. vector requests are checked the same way against a plain vector check (which reads the
+// matrices, not the row copies isSafeVector keeps). the same seed always gives the same run
+//
+// usage: SafetyDiff [--tasks 12] [--resources 3] [--units 8] [--tightness 0.8] [--steps 200000] [--round 2000]
+//                   [--cache 64] [--seed 1]
+// claims go up to tightness * units. every --round steps the matrices start over empty with new checks, but the
+// caches are kept (a state seen in an earlier round hashes to the same key). --cache is the capacity of each cache
+// (small, so entries are evicted often)
+public class SafetyDiff {
+
+    private static final String[] NAMES = {"SafetyCheck", "SortedSafetyCheck", "SafetyCheck+cache", "SortedSafetyCheck+cache"};
+
+    private int num_tasks;
+    private int[] units;                // units present of each resource
+    private int max_claim;              // largest claim of any resource
+    private int[] available;            // units not held by any task
+    private IntMatrix allocation;
+    private IntMatrix claims;
+    private boolean[] active;           // false once a task has retired
+    private SafetyCheck[] checks;
+    private SafetyCache[] caches;       // one per cached check, kept from round to round
+    private boolean[] removed;          // scratch space for the plain sweeps
+    private int[] work;                 // scratch space for the plain vector check
+    private Random random;
+
+    private long requests = 0;          // requests checked
+    private long vectors = 0;           // vector requests checked
+    private long unsafe = 0;            // requests found unsafe
+    private long grants = 0;
+
+
+    ///// MAIN /////
+    public static void main(String[] args){
+
+        int num_tasks = 12;
+        int num_resources = 3;
+        int units_each = 8;
+        double tightness = 0.8;
+        long steps = 200000;
+        int round = 2000;
+        int cache_size = 64;
+        long seed = 1;
+
+        for(int i=0; i<args.length; i++){
+            String value = args[++i];
+            if(args[i-1].equals("--tasks")){
+                num_tasks = Integer.parseInt(value);
+            }else if(args[i-1].equals("--resources")){
+                num_resources = Integer.parseInt(value);
+            }else if(args[i-1].equals("--units")){
+                units_each = Integer.parseInt(value);
+            }else if(args[i-1].equals("--tightness")){
+                tightness = Double.parseDouble(value);
+            }else if(args[i-1].equals("--steps")){
+                steps = Long.parseLong(value);
+            }else if(args[i-1].equals("--round")){
+                round = Integer.parseInt(value);
+            }else if(args[i-1].equals("--cache")){
+                cache_size = Integer.parseInt(value);
+            }else if(args[i-1].equals("--seed")){
+                seed = Long.parseLong(value);
+            }else{
+                throw new IllegalArgumentException("Unknown option " + args[i-1]);
+            }
+        }
+
+        int max_claim = Math.max(1, (int) Math.round(tightness * units_each));
+        SafetyDiff diff = new SafetyDiff(num_tasks, num_resources, units_each, max_claim, cache_size, seed);
+        String failure = null;
+        for(long s=0; s<steps && failure == null; s++){
+            if(s % round == 0){
+                diff.start();
+            }
+            failure = diff.step();
+            if(failure != null){
+                failure = "step " + s + ": " + failure;
+            }
+        }
+
+        System.out.println("tasks: " + num_tasks + "  resources: " + num_resources + "  units: " + units_each + "  max claim: " + max_claim + "  seed: " + seed);
+        System.out.println("requests: " + diff.requests + "  vector requests: " + diff.vectors + "  unsafe: " + diff.unsafe + "  grants: " + diff.grants);
+        for(int c=2; c<NAMES.length; c++){
+            System.out.println(NAMES[c] + ": " + diff.caches[c]);
+        }
+        if(failure != null){
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+
+    // constructor //
+    private SafetyDiff(int num_tasks, int num_resources, int units_each, int max_claim, int cache_size, long seed){
+        this.num_tasks = num_tasks;
+        this.max_claim = max_claim;
+        this.units = new int[num_resources];
+        for(int j=0; j<num_resources; j++){
+            units[j] = units_each;
+        }
+        this.removed = new boolean[num_tasks];
+        this.work = new int[num_resources];
+        this.random = new Random(seed);
+        this.caches = new SafetyCache[NAMES.length];
+        for(int c=2; c<caches.length; c++){
+            caches[c] = new SafetyCache(cache_size);
+        }
+    }
+
+
+    // start over with empty matrices, every task active, and new checks
+    private void start(){
+        allocation = IntMatrix.allocate(num_tasks, units.length);
+        claims = IntMatrix.allocate(num_tasks, units.length);
+        active = new boolean[num_tasks];
+        for(int i=0; i<num_tasks; i++){
+            active[i] = true;
+        }
+        available = units.clone();
+
+        checks = new SafetyCheck[NAMES.length];
+        for(int c=0; c<checks.length; c++){
+            checks[c] = c % 2 == 0 ? new SafetyCheck(allocation, claims, System.out) : new SortedSafetyCheck(allocation, claims, System.out);
+            checks[c].cache = caches[c];
+        }
+    }
+
+
+    // apply one random operation; returns a description of the mismatch if the checks disagreed (null if not)
+    private String step(){
+        int i = random.nextInt(num_tasks);
+        int j = random.nextInt(units.length);
+        int op = random.nextInt(1000);
+
+        if(!active[i]){
+            return null;
+        }
+
+        // a new claim, never below what the task holds
+        if(op < 150){
+            claims.set(i, j, newClaim(i, j));
+            changed(i, j);
+        }
+        // give back some of what the task holds
+        else if(op < 450){
+            int held = allocation.get(i, j);
+            if(held > 0){
+                int amount = 1 + random.nextInt(held);
+                allocation.add(i, j, -amount);
+                available[j] += amount;
+                changed(i, j);
+            }
+        }
+        // the task leaves: usually after giving back everything (terminate), now and then still holding it
+        else if(op < 452){
+            if(random.nextInt(4) != 0){
+                for(int k=0; k<units.length; k++){
+                    available[k] += allocation.get(i, k);
+                    allocation.set(i, k, 0);
+                    changed(i, k);
+                }
+            }
+            active[i] = false;
+            for(SafetyCheck check : checks){
+                check.retire(i);
+            }
+        }
+        // replace the active tasks' allocations and claims wholesale, as a restore from a snapshot does
+        else if(op < 454){
+            for(int t=0; t<num_tasks; t++){
+                for(int k=0; k<units.length && active[t]; k++){
+                    available[k] += allocation.get(t, k);
+                    allocation.set(t, k, 0);
+                }
+            }
+            for(int t=0; t<num_tasks; t++){
+                for(int k=0; k<units.length && active[t]; k++){
+                    claims.set(t, k, newClaim(t, k));
+                    int amount = random.nextInt(Math.min(claims.get(t, k), available[k]) + 1);
+                    allocation.set(t, k, amount);
+                    available[k] -= amount;
+                }
+            }
+            for(SafetyCheck check : checks){
+                check.reindex();
+            }
+        }
+        // a vector request within the task's claims (maybe more than is available)
+        else if(op < 554){
+            int[] amounts = new int[units.length];
+            int total = 0;
+            for(int k=0; k<units.length; k++){
+                amounts[k] = random.nextInt(claims.get(i, k) - allocation.get(i, k) + 1);
+                total += amounts[k];
+            }
+            if(total == 0){
+                return null;
+            }
+            boolean expected = plainVector(i, amounts);
+            vectors++;
+            for(int c=0; c<checks.length; c++){
+                boolean safe = checks[c].isSafeVector(i, amounts, available);
+                if(safe != expected){
+                    return NAMES[c] + " says " + safe + ", plain vector check says " + expected + " for task " + i + " requesting "
+                            + Arrays.toString(amounts) + " (available " + Arrays.toString(available) + ")";
+                }
+            }
+            if(!expected){
+                unsafe++;
+            }else if(SafetyCheck.covers(available, amounts) && random.nextInt(4) != 0){
+                for(int k=0; k<units.length; k++){
+                    allocation.add(i, k, amounts[k]);
+                    available[k] -= amounts[k];
+                    changed(i, k);
+                }
+                grants++;
+            }
+        }
+        // a request within the task's claim (maybe more than is available): every check must give the same verdict
+        else{
+            int room = claims.get(i, j) - allocation.get(i, j);
+            if(room == 0){
+                return null;
+            }
+            int amount = 1 + random.nextInt(room);
+            int expected = plainCheck(i, j, amount);
+            requests++;
+            for(int c=0; c<checks.length; c++){
+                int failed = checks[c].firstUnsafeResource(i, j, amount, available);
+                if(failed != expected){
+                    return NAMES[c] + " says " + failed + ", plain sweep says " + expected + " for task " + i + " requesting "
+                            + amount + " of resource " + j + " (available " + Arrays.toString(available) + ")";
+                }
+            }
+            if(expected >= 0){
+                unsafe++;
+            }else if(amount <= available[j] && random.nextInt(4) != 0){
+                allocation.add(i, j, amount);
+                available[j] -= amount;
+                changed(i, j);
+                grants++;
+            }
+        }
+        return null;
+    }
+
+
+    // a random claim of at most max_claim, but never below what the task holds
+    private int newClaim(int i, int j){
+        int held = allocation.get(i, j);
+        return held + random.nextInt(Math.max(held, max_claim) - held + 1);
+    }
+
+
+    private void changed(int i, int j){
+        for(SafetyCheck check : checks){
+            check.changed(i, j);
+        }
+    }
+
+
+    // the banker's check with nothing left out: the requesting task must fit in what is available, then every
+    // resource is swept with the request granted (only the requested resource sees the grant)
+    private int plainCheck(int task, int resource, int amount){
+        for(int j=0; j<units.length; j++){
+            if(claims.get(task, j) - allocation.get(task, j) > available[j]){
+                return j;
+            }
+        }
+        for(int j=0; j<units.length; j++){
+            int granted = j == resource ? amount : 0;
+            if(!plainSweep(j, available[j] - granted, task, granted)){
+                return j;
+            }
+        }
+        return -1;
+    }
+
+
+    // true if every task still holding units of resource j can finish (retired tasks never do)
+    private boolean plainSweep(int j, int work, int task, int granted){
+        for(int i=0; i<num_tasks; i++){
+            removed[i] = false;
+        }
+        boolean progress = true;
+        while(progress){
+            progress = false;
+            for(int i=0; i<num_tasks; i++){
+                int held = allocation.get(i, j) + (i == task ? granted : 0);
+                if(active[i] && !removed[i] && claims.get(i, j) - held <= work){
+                    work += held;
+                    removed[i] = true;
+                    progress = true;
+                }
+            }
+        }
+        for(int i=0; i<num_tasks; i++){
+            int held = allocation.get(i, j) + (i == task ? granted : 0);
+            if(!removed[i] && held != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+
+    // the vector check with nothing left out: the task must fit in what is available, then the whole request is
+    // granted and every active task whose need fits in every resource finishes, until no more can. retired tasks
+    // are left out (as isSafeVector leaves them out)
+    private boolean plainVector(int task, int[] amounts){
+        if(!fitsIn(task, available, null)){
+            return false;
+        }
+        for(int j=0; j<units.length; j++){
+            work[j] = available[j] - amounts[j];
+        }
+        for(int i=0; i<num_tasks; i++){
+            removed[i] = !active[i];
+        }
+        boolean progress = true;
+        while(progress){
+            progress = false;
+            for(int i=0; i<num_tasks; i++){
+                if(!removed[i] && fitsIn(i, work, i == task ? amounts : null)){
+                    for(int j=0; j<units.length; j++){
+                        work[j] += allocation.get(i, j) + (i == task ? amounts[j] : 0);
+                    }
+                    removed[i] = true;
+                    progress = true;
+                }
+            }
+        }
+        for(int i=0; i<num_tasks; i++){
+            for(int j=0; j<units.length && !removed[i]; j++){
+                if(allocation.get(i, j) + (i == task ? amounts[j] : 0) != 0){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+
+    // true if a task's need of every resource (with granted more units, if not null) is at most what is in units
+    private boolean fitsIn(int i, int[] units, int[] granted){
+        for(int j=0; j<units.length; j++){
+            if(claims.get(i, j) - allocation.get(i, j) - (granted != null ? granted[j] : 0) > units[j]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.yf833.bench;
+
+import com.yf833.Generator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+
+
+// deterministic synthetic scenarios (in the input file format) for the benchmarks, built with Generator
+// contention (0..1] is the largest claim as a fraction of the units present
+public class Workload {
+
+    public static final long SEED = 42;
+
+
+    // build the text of a scenario; the same parameters always give the same text
+    public static String generate(int tasks, int resources, int activities, double contention){
+        Generator g = new Generator();
+        g.seed = SEED;
+        g.num_tasks = tasks;
+        g.num_resources = resources;
+        g.units = 10;
+        g.activities = activities;
+        g.tightness = contention;
+
+        StringWriter out = new StringWriter();
+        try{
+            g.write(out);
+        }catch(IOException e){
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+}
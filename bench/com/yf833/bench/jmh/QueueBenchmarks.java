@@ -0,0 +1,93 @@
+package com.yf833.bench.jmh;
+
+import com.yf833.Task;
+import com.yf833.TaskList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+
+// the simulators' queue pattern: every other ready task blocks (removed from ready while iterating it), then every
+// blocked task is unblocked (removed from blocked while iterating it); the old LinkedBlockingQueue vs TaskList
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueBenchmarks {
+
+    @Param({"10", "100", "1000"})
+    public int tasks;
+
+    private Task[] all;
+
+
+    @Setup(Level.Trial)
+    public void setup(){
+        all = new Task[tasks];
+        for(int i=0; i<tasks; i++){
+            all[i] = new Task(i+1, 1);
+        }
+    }
+
+
+    @Benchmark
+    public int blocking(){
+        LinkedBlockingQueue<Task> ready = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<Task> blocked = new LinkedBlockingQueue<>();
+        for(Task t : all){
+            ready.add(t);
+        }
+        for(Task t : ready){
+            if(t.taskID % 2 == 0){
+                ready.remove(t);
+                blocked.add(t);
+            }
+        }
+        for(Task t : blocked){
+            blocked.remove(t);
+            ready.add(t);
+        }
+        return ready.size();
+    }
+
+
+    @Benchmark
+    public int tasklist(){
+        TaskList ready = new TaskList();
+        TaskList blocked = new TaskList();
+        for(Task t : all){
+            ready.add(t);
+        }
+        for(Task t : ready){
+            if(t.taskID % 2 == 0){
+                ready.remove(t);
+                blocked.add(t);
+            }
+        }
+        for(Task t : blocked){
+            blocked.remove(t);
+            ready.add(t);
+        }
+        int size = ready.size();
+        while(ready.poll() != null){        // a task is in one list at a time, so empty it for the next call
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,238 @@
+package com.yf833.bench.jmh;
+
+import com.yf833.Activity;
+import com.yf833.Banker;
+import com.yf833.IntMatrix;
+import com.yf833.SafetyCache;
+import com.yf833.SafetyCheck;
+import com.yf833.Scenario;
+import com.yf833.SortedSafetyCheck;
+import com.yf833.Task;
+import com.yf833.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+
+// the banker's safety checks on a mid-run state of a generated workload: every task has made its claims, and first
+// requests are granted while at least half of each resource stays available. the probe, the first task whose
+// remaining claims fit in what is available, asks for one unit of resource 1 (so the full sweep runs instead of
+// the early exit)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafetyBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class MidRun {
+
+        public LinkedBlockingQueue<Task> tasks;
+        public int[] available;
+        public int[][] allocation;
+        public Task probe;
+        public int[] amounts;                   // the probe's vector request: one unit of every resource it has room for
+        public ArrayList<Integer> available_list;
+
+        // the safety checks read off-heap copies of the matrices
+        public IntMatrix allocation_matrix;
+        public IntMatrix claims_matrix;
+        public SafetyCheck safety;
+        public SafetyCheck cached;              // answered from a SafetyCache (the state never changes, so every call after the first is a hit)
+        public SortedSafetyCheck sorted;
+
+        // a state in which nothing is allocated yet and every unit is available, so any request leaves enough for
+        // every task's claims: both checks admit it from the largest outstanding needs, without a sweep
+        public int[] all_units;
+        public SafetyCheck idle;
+        public SortedSafetyCheck idle_sorted;
+
+
+        @Setup(Level.Trial)
+        public void setup(WorkloadState w){
+            Scenario scenario = w.scenario;
+            tasks = scenario.toTasks();
+            available = scenario.resource_amounts.clone();
+            allocation = new int[tasks.size()][available.length];
+            int[][] claims = new int[tasks.size()][];
+
+            for(Task t : tasks){
+                claims[t.taskID-1] = t.initial_claims;
+                boolean requested = false;
+                while(!t.activities.isEmpty() && !requested){
+                    Activity a = t.activities.peek();
+                    if(a.op == Activity.INITIATE){
+                        t.initial_claims[a.resourceID-1] = a.amount;
+                        t.activities.poll();
+                    }else{
+                        if(a.op == Activity.REQUEST && a.amount <= available[a.resourceID-1] - scenario.resource_amounts[a.resourceID-1]/2){
+                            allocation[t.taskID-1][a.resourceID-1] += a.amount;
+                            available[a.resourceID-1] -= a.amount;
+                            t.activities.poll();
+                        }
+                        requested = true;
+                    }
+                }
+            }
+
+            Task first = tasks.peek();
+            for(Task t : tasks){
+                boolean fits = t.initial_claims[0] > allocation[t.taskID-1][0];
+                for(int j=0; j<available.length && fits; j++){
+                    fits = t.initial_claims[j] - allocation[t.taskID-1][j] <= available[j];
+                }
+                if(fits){
+                    first = t;
+                    break;
+                }
+            }
+            probe = new Task(first);
+            probe.activities.clear();
+            probe.activities.add(new Activity("request", first.taskID, 0, 1, 1));
+
+            amounts = new int[available.length];
+            for(int j=0; j<available.length; j++){
+                if(first.initial_claims[j] > allocation[first.taskID-1][j] && available[j] > 0){
+                    amounts[j] = 1;
+                }
+            }
+            available_list = new ArrayList<>();
+            for(int a : available){
+                available_list.add(a);
+            }
+
+            allocation_matrix = matrix(allocation, available.length);
+            claims_matrix = matrix(claims, available.length);
+            safety = new SafetyCheck(allocation_matrix, claims_matrix, WorkloadState.DISCARD);
+            cached = new SafetyCheck(allocation_matrix, claims_matrix, WorkloadState.DISCARD);
+            cached.cache = new SafetyCache(1024);
+            sorted = new SortedSafetyCheck(allocation_matrix, claims_matrix, WorkloadState.DISCARD);
+
+            IntMatrix idle_allocation = IntMatrix.allocate(allocation.length, available.length);
+            all_units = scenario.resource_amounts.clone();
+            idle = new SafetyCheck(idle_allocation, claims_matrix, WorkloadState.DISCARD);
+            idle_sorted = new SortedSafetyCheck(idle_allocation, claims_matrix, WorkloadState.DISCARD);
+        }
+
+
+        // an off-heap copy of a matrix of heap rows
+        private static IntMatrix matrix(int[][] rows, int columns){
+            IntMatrix m = IntMatrix.allocate(rows.length, columns);
+            for(int i=0; i<rows.length; i++){
+                for(int j=0; j<columns; j++){
+                    m.set(i, j, rows[i][j]);
+                }
+            }
+            return m;
+        }
+
+    }
+
+
+    @Benchmark
+    public boolean isSafe(MidRun s){
+        return s.safety.isSafe(s.probe.taskID-1, 0, 1, s.available);
+    }
+
+
+    @Benchmark
+    public boolean isSafeCached(MidRun s){
+        return s.cached.isSafe(s.probe.taskID-1, 0, 1, s.available);
+    }
+
+
+    // the tasks kept in order of remaining need (a few O(log n) rounds per resource)
+    @Benchmark
+    public boolean isSafeSorted(MidRun s){
+        return s.sorted.isSafe(s.probe.taskID-1, 0, 1, s.available);
+    }
+
+
+    // a grant and release of one unit before the check (each moves the probe's entry in the need index)
+    @Benchmark
+    public boolean isSafeSortedUpdate(MidRun s){
+        int i = s.probe.taskID-1;
+        s.allocation_matrix.add(i, 0, 1);
+        s.sorted.changed(i, 0);
+        s.allocation_matrix.add(i, 0, -1);
+        s.sorted.changed(i, 0);
+        return s.sorted.isSafe(i, 0, 1, s.available);
+    }
+
+
+    // building the need index of every resource from the matrices (as when the check is created or restored)
+    @Benchmark
+    public SortedSafetyCheck sortedSafetySetup(MidRun s){
+        return new SortedSafetyCheck(s.allocation_matrix, s.claims_matrix, WorkloadState.DISCARD);
+    }
+
+
+    // a grant and release of one unit by every task in turn (each moves that task's entry in the need index twice),
+    // so the time is per pass over all tasks
+    @Benchmark
+    public SortedSafetyCheck sortedSafetyUpdate(MidRun s){
+        for(int i=0; i<s.allocation.length; i++){
+            s.allocation_matrix.add(i, 0, 1);
+            s.sorted.changed(i, 0);
+            s.allocation_matrix.add(i, 0, -1);
+            s.sorted.changed(i, 0);
+        }
+        return s.sorted;
+    }
+
+
+    // a request that leaves enough of every resource for every task's claims (compare isSafe)
+    @Benchmark
+    public boolean fastPathPlain(MidRun s){
+        return s.idle.isSafe(s.probe.taskID-1, 0, 1, s.all_units);
+    }
+
+
+    @Benchmark
+    public boolean fastPathSorted(MidRun s){
+        return s.idle_sorted.isSafe(s.probe.taskID-1, 0, 1, s.all_units);
+    }
+
+
+    // the copying version used by runBanker before SafetyCheck (copies are part of every call)
+    @Benchmark
+    public boolean isSafeCopying(MidRun s){
+        return Banker.isSafe(new Task(s.probe), Util.copyTaskQueue(s.tasks), new ArrayList<>(s.available_list), Util.copy2DArray(s.allocation));
+    }
+
+
+    // the probe's vector request checked at once against whole need rows
+    @Benchmark
+    public boolean isSafeVector(MidRun s){
+        return s.safety.isSafeVector(s.probe.taskID-1, s.amounts, s.available);
+    }
+
+
+    // the same request the way it would be checked without vector requests: one isSafe() per resource
+    @Benchmark
+    public boolean isSafePerResource(MidRun s){
+        boolean all = true;
+        for(int j=0; j<s.amounts.length && all; j++){
+            if(s.amounts[j] != 0){
+                all = s.safety.isSafe(s.probe.taskID-1, j, s.amounts[j], s.available);
+            }
+        }
+        return all;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.yf833.bench.jmh;
+
+import com.yf833.Banker;
+import com.yf833.InputParser;
+import com.yf833.Optimistic;
+import com.yf833.Scenario;
+import com.yf833.TableSimulator;
+import com.yf833.Task;
+import com.yf833.TaskTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+
+// input parsing and whole simulation runs over a generated workload: the object-based simulators (Optimistic and
+// Banker, which use up their task queue, so every call gets a new one) and the large-scale TableSimulator with
+// FIFO, the banker, and the banker with the sorted safety check
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatorBenchmarks {
+
+    // a fresh copy of the workload's tasks for every call of the object-based simulators
+    @State(Scope.Thread)
+    public static class Input {
+
+        public LinkedBlockingQueue<Task> tasks;
+
+        @Setup(Level.Invocation)
+        public void setup(WorkloadState w){
+            tasks = w.scenario.toTasks();
+        }
+
+    }
+
+
+    @Benchmark
+    public Scenario parse(WorkloadState w) throws IOException {
+        return InputParser.parse(w.file);
+    }
+
+
+    @Benchmark
+    public Object runFifo(WorkloadState w, Input input){
+        return new Optimistic(input.tasks, w.scenario.resourceAmounts()).run();
+    }
+
+
+    @Benchmark
+    public Object runBanker(WorkloadState w, Input input){
+        return new Banker(input.tasks, w.scenario.resourceAmounts(), WorkloadState.DISCARD).run();
+    }
+
+
+    @Benchmark
+    public Object runFifoTable(WorkloadState w){
+        return new TableSimulator(new TaskTable(w.program), w.scenario.resourceAmounts(), false, false, WorkloadState.DISCARD).run();
+    }
+
+
+    @Benchmark
+    public Object runBankerTable(WorkloadState w){
+        return new TableSimulator(new TaskTable(w.program), w.scenario.resourceAmounts(), true, false, WorkloadState.DISCARD).run();
+    }
+
+
+    @Benchmark
+    public Object runBankerSorted(WorkloadState w){
+        TableSimulator simulator = new TableSimulator(new TaskTable(w.program), w.scenario.resourceAmounts(), true, false, WorkloadState.DISCARD);
+        simulator.setSortedSafety(true);
+        return simulator.run();
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.yf833.bench.jmh;
+
+import com.yf833.InputParser;
+import com.yf833.Program;
+import com.yf833.Scenario;
+import com.yf833.bench.Workload;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+
+
+// one generated workload (see Workload), written to a temporary file, parsed and compiled once per trial
+// every combination of the parameters is run; override them with -p, e.g. -p tasks=100,1000 -p contention=0.2,0.8
+@State(Scope.Benchmark)
+public class WorkloadState {
+
+    // output of the simulators and checks is thrown away
+    public static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        public void write(int b) {
+        }
+    });
+
+    @Param({"10", "100", "1000"})
+    public int tasks;
+
+    @Param({"4"})
+    public int resources;
+
+    @Param({"10"})
+    public int activities;          // activities per task (besides initiate and terminate)
+
+    @Param({"0.5"})
+    public double contention;       // the largest claim as a fraction of the units present
+
+    public File file;
+    public Scenario scenario;
+    public Program program;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("workload", ".txt");
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write(Workload.generate(tasks, resources, activities, contention));
+        }
+        scenario = InputParser.parse(file);
+        program = Program.compile(scenario);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        file.delete();
+    }
+
+}
@@ -1,19 +1,32 @@
 package com.yf833;
 
+import java.util.Arrays;
+
 
 // The activity class represents a task's activity
 public class Activity {
 
+    // activity type codes (used by the input parser's records, compiled programs, and the simulators' dispatch)
+    public static final int INITIATE = 0;
+    public static final int REQUEST = 1;
+    public static final int RELEASE = 2;
+    public static final int TERMINATE = 3;
+    public static final int VREQUEST = 4;       // atomic request for several resource types at once (all or nothing)
+    public static final String[] TYPE_NAMES = {"initiate", "request", "release", "terminate", "vrequest"};
+
     public String type;         // task type (request, claim, release, initiate, terminate)
+    public int op;              // type code of this activity (INITIATE, REQUEST, RELEASE, TERMINATE or VREQUEST; -1 if unknown)
     public int taskID;          // task ID for this activity
     public int delay;           // number of cycles to delay the activity by
     public int resourceID;      // the resource that this activity is for
     public int amount;          // claim amount, request amount, or release amount (depending on activity type)
+    public int[] amounts;       // vector request: units requested of every resource type (null for other activities)
 
 
     // constructor //
     public Activity(String type, int task_id){
         this.type = type;
+        this.op = typeCode(type);
         this.taskID = task_id;
 
         //default values for delay, resourceID, and amount
@@ -25,6 +38,7 @@ public class Activity {
     // constructor //
     public Activity(String type, int task_id, int delay, int resourceID, int amount){
         this.type = type;
+        this.op = typeCode(type);
         this.taskID = task_id;
         this.delay = delay;
         this.resourceID = resourceID;
@@ -34,15 +48,45 @@ public class Activity {
     // copy constructor //
     public Activity(Activity a2){
         this.type = a2.type;
+        this.op = a2.op;
         this.taskID = a2.taskID;
         this.delay = a2.delay;
         this.resourceID = a2.resourceID;
         this.amount = a2.amount;
+        this.amounts = a2.amounts;
+    }
+
+
+    // constructor: a vector request (resourceID and amount describe its first resource) //
+    public Activity(int task_id, int delay, int[] amounts){
+        this("vrequest", task_id, delay, 0, 0);
+        this.amounts = amounts;
+        for(int j=0; j<amounts.length; j++){
+            if(amounts[j] != 0){
+                this.resourceID = j+1;
+                this.amount = amounts[j];
+                break;
+            }
+        }
     }
 
 
 
+    // returns the type code for an activity type name
+    public static int typeCode(String type){
+        for(int i=0; i<TYPE_NAMES.length; i++){
+            if(TYPE_NAMES[i].equals(type)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
     public String toString(){
+        if(amounts != null){
+            return String.format("%-12s", this.type) + this.taskID + " " + this.delay + " " + Arrays.toString(amounts);
+        }
         return String.format("%-12s", this.type) + this.taskID + " " + this.delay + " " + this.resourceID + " " + this.amount;
     }
 
@@ -1,64 +1,120 @@
 package com.yf833;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.concurrent.LinkedBlockingQueue;
 
 
 
+// each Banker instance holds the state of one simulation, so any number of them can run at the same time
 public class Banker {
 
-    public static int cycle = 0;                                                    // counter for current cycle #
-    public static int[][] resource_claims;                                          // a 2D array to lookup current resource claims for all tasks
-    public static ArrayList<Task> finished_tasks = new ArrayList<>();               // contains tasks that have terminated or aborted (used when printing output)
-    public static ArrayList<Integer> available;                                     // an arraylist of availble resource amounts for all resources
-    public static ArrayList<Integer> freed;                                         // an arraylist for keeping track of how many units of each resource have been freed in this cycle
-    public static LinkedBlockingQueue<Task> blocked = new LinkedBlockingQueue<>();  // a queue for blocked tasks
+    public int cycle = 0;                                                    // counter for current cycle #
+    public IntMatrix resource_claims;                                        // current resource claims for all tasks (off-heap)
+    public ArrayList<Task> finished_tasks = new ArrayList<>();               // contains tasks that have terminated or aborted (used when printing output)
+    public int[] available;                                                  // an array of availble resource amounts for all resources
+    public int[] freed;                                                      // an array for keeping track of how many units of each resource have been freed in this cycle
+    public TaskList blocked = new TaskList();                                // a queue for blocked tasks
+    public SafetyCheck safety;                                               // checks requests for safety in place (no copies of tasks or claims)
+    public Metrics metrics;                                                  // records per-cycle metrics if set before run() (null if metrics are off)
+    public TraceRecorder trace;                                              // records every state change if set before run() (null if tracing is off)
+    public boolean dump_unsafe = false;                                      // print the claims left over by every failed safety check (diagnostic)
+    public SafetyCache cache;                                                // reuses safety verdicts of states that come back if set before run() (null if off)
+    public boolean sorted_safety = false;                                    // use SortedSafetyCheck (tasks kept sorted by remaining need) if set before run()
+
+    private TaskList tasks;                                                  // the ready queue
+    private ArrayList<Integer> resource_amounts;                             // units present for each resource type
+    private PrintStream out;                                                 // where messages printed during the run go
+    private IntMatrix initial_claims;                                        // initial claims for all tasks (each task's initial_claims, off-heap)
+
+
+    // constructor //
+    public Banker(LinkedBlockingQueue<Task> tasks, ArrayList<Integer> resource_amounts){
+        this(tasks, resource_amounts, System.out);
+    }
+
+
+    // constructor //
+    public Banker(LinkedBlockingQueue<Task> tasks, ArrayList<Integer> resource_amounts, PrintStream out){
+        this.tasks = new TaskList(tasks);
+        this.resource_amounts = resource_amounts;
+        this.out = out;
+    }
 
 
-    // run the banker simulation for the given resources and tasks //
+    // run the banker simulation for the given resources and tasks and print the summary //
     public static void runBanker(LinkedBlockingQueue<Task> tasks, ArrayList<Integer> resource_amounts){
+        new Banker(tasks, resource_amounts).run().print(System.out);
+    }
 
-        available = resource_amounts;
-        freed = new ArrayList<>(Collections.nCopies(available.size(), 0));
 
-        //initialize resource_claims[][]
-        resource_claims = new int[tasks.size()][resource_amounts.size()];
-        for(Task t : tasks){
-            for(int j=0; j<resource_amounts.size(); j++){
-                resource_claims[t.taskID-1][j] = 0;
-            }
+    // run the banker simulation to completion //
+    public Result run(){
+
+        available = new int[resource_amounts.size()];
+        freed = new int[resource_amounts.size()];
+        for(int i=0; i<available.length; i++){
+            available[i] = resource_amounts.get(i);
         }
 
+        //initialize resource_claims and the initial claims matrix the safety check reads (kept in step with each task's initial_claims)
+        resource_claims = IntMatrix.allocate(tasks.size(), resource_amounts.size());
+        initial_claims = IntMatrix.allocate(tasks.size(), resource_amounts.size());
+        safety = sorted_safety ? new SortedSafetyCheck(resource_claims, initial_claims, out) : new SafetyCheck(resource_claims, initial_claims, out);
+        safety.metrics = metrics;
+        safety.dump_unsafe = dump_unsafe;
+        safety.cache = cache;
+
 
         ///// Main Loop /////
         while(!tasks.isEmpty() || !blocked.isEmpty()){
 
+            if(metrics != null){
+                metrics.startCycle();
+            }
+
             ///// (1) check if blocked tasks can be serviced /////
             for(Task t : blocked){
 
                 Activity current = t.activities.peek();
 
-                //create copies of data strcutures for simulating within isSafe()
-                // (Task task, LinkedBlockingQueue<Task> tasks, ArrayList<Integer> available, int[][] claims)
-
-                Task task_copy = new Task(t);
-                LinkedBlockingQueue<Task> tasks_copy = Util.copyTaskQueues(tasks, blocked);
-                ArrayList<Integer> available_copy = new ArrayList<>(available);
-                int[][] claims_copy = Util.copy2DArray(resource_claims);
+                // a vector request is granted whole (if every unit is available and the state stays safe) or not at all
+                if(current.op == Activity.VREQUEST){
+                    if(SafetyCheck.covers(available, current.amounts) && safety.isSafeVector(t.taskID-1, current.amounts, available)){
+                        grantVector(t, current);
+                        t.activities.poll();
+                        t.isBlocked = false;
+                    }else{
+                        t.waiting_time++;
+                        if(metrics != null){
+                            metrics.deny(shortResource(current));
+                        }
+                    }
+                    continue;
+                }
 
                 // check for safety
-                boolean is_safe = isSafe(task_copy, tasks_copy, available_copy, claims_copy);
+                boolean is_safe = safety.isSafe(t.taskID-1, current.resourceID-1, current.amount, available);
 
                 // try to claim the resource amount (first check if requested amount is less than available and the state is safe)
-                if(current.amount <= available.get(current.resourceID-1) && is_safe){
-                    resource_claims[t.taskID-1][current.resourceID-1] += current.amount;
-                    available.set(current.resourceID - 1, available.get(current.resourceID - 1) - current.amount);
+                if(current.amount <= available[current.resourceID-1] && is_safe){
+                    resource_claims.add(t.taskID-1, current.resourceID-1, current.amount);
+                    available[current.resourceID-1] -= current.amount;
+                    safety.changed(t.taskID-1, current.resourceID-1);
                     t.activities.poll();
                     t.isBlocked = false;
+                    if(metrics != null){
+                        metrics.grant(current.resourceID-1);
+                    }
+                    if(trace != null){
+                        trace.record(TraceRecorder.GRANT, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                    }
                 }else{
                     //increase waiting time for task if its request was not granted
                     t.waiting_time++;
+                    if(metrics != null){
+                        metrics.deny(current.resourceID-1);
+                    }
                 }
             }
 
@@ -70,78 +126,131 @@ public class Banker {
 
                 if(current.delay == 0){
 
-                    if(current.type.equals("initiate")){
+                    if(current.op == Activity.INITIATE){
 
                         // if initial claims for a resource exceeds the number of units present, then abort and release its resources
-                        if(current.amount > available.get(current.resourceID-1)) {
-                            System.out.println("Banker aborts task " + t.taskID + " before run begins:");
-                            System.out.println("\tclaim for resource " + current.resourceID + " (" + current.amount + ") exceeds number of units present (" + available.get(current.resourceID-1) + ")");
+                        // (what is present, not what is available now: other tasks may already hold some of it)
+                        int present = resource_amounts.get(current.resourceID-1);
+                        if(current.amount > present) {
+                            out.println("Banker aborts task " + t.taskID + " before run begins:");
+                            out.println("\tclaim for resource " + current.resourceID + " (" + current.amount + ") exceeds number of units present (" + present + ")");
                             tasks = abortUnsafeTask(tasks, t.taskID);
                         }
                         else{
                             // initiate for the current task -- update the initial_claims array with the claimed amount
                             t.initial_claims[current.resourceID-1] = current.amount;
+                            initial_claims.set(t.taskID-1, current.resourceID-1, current.amount);
+                            safety.changed(t.taskID-1, current.resourceID-1);
                             t.activities.poll();
                         }
 
                     }
-                    else if(current.type.equals("request")){
-
-                        //create copies of data structures for simulating within isSafe()
-                        // Task task, LinkedBlockingQueue<Task> tasks, ArrayList<Integer> available, int[][] claims
-
-                        Task task_copy = new Task(t);
-                        LinkedBlockingQueue<Task> tasks_copy = Util.copyTaskQueues(tasks, blocked);
-                        ArrayList<Integer> available_copy = new ArrayList<>(available);
-                        int[][] claims_copy = Util.copy2DArray(resource_claims);
+                    else if(current.op == Activity.REQUEST){
 
                         // check for safety
-                        boolean is_safe = isSafe(task_copy, tasks_copy, available_copy, claims_copy);
+                        boolean is_safe = safety.isSafe(t.taskID-1, current.resourceID-1, current.amount, available);
 
                         // if request exceeds its claim, then abort and release its resources
-                        if(current.amount + resource_claims[t.taskID-1][current.resourceID-1] > t.initial_claims[current.resourceID-1]){
+                        if(current.amount + resource_claims.get(t.taskID-1, current.resourceID-1) > t.initial_claims[current.resourceID-1]){
 
-                            System.out.println("During cycle " + cycle + "-" + (cycle + 1) + " of Banker's algorithm");
-                            System.out.print("\tTask " + t.taskID + "'s request exceeds its claim; aborted; ");
-                            System.out.println(resource_claims[t.taskID-1][current.resourceID-1] + " units available next cycle");
+                            out.println("During cycle " + cycle + "-" + (cycle + 1) + " of Banker's algorithm");
+                            out.print("\tTask " + t.taskID + "'s request exceeds its claim; aborted; ");
+                            out.println(resource_claims.get(t.taskID-1, current.resourceID-1) + " units available next cycle");
 
                             //abort and return resources
                             tasks = abortUnsafeTask(tasks, t.taskID);
 
                         }
                         // try to claim the resource amount
-                        else if(current.amount <= available.get(current.resourceID-1) && !t.isBlocked && is_safe){
+                        else if(current.amount <= available[current.resourceID-1] && !t.isBlocked && is_safe){
 
                             // grant the request and subtract its claimed amount from available
-                            resource_claims[t.taskID-1][current.resourceID-1] += current.amount;
-                            available.set(current.resourceID - 1, available.get(current.resourceID - 1) - current.amount);
+                            resource_claims.add(t.taskID-1, current.resourceID-1, current.amount);
+                            available[current.resourceID-1] -= current.amount;
+                            safety.changed(t.taskID-1, current.resourceID-1);
                             t.activities.poll();
+                            if(metrics != null){
+                                metrics.grant(current.resourceID-1);
+                            }
+                            if(trace != null){
+                                trace.record(TraceRecorder.GRANT, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                            }
 
                         }else{
                             // don't grant the request and block the task
                             t.waiting_time++;
                             t.isBlocked = true;
+                            if(metrics != null){
+                                metrics.deny(current.resourceID-1);
+                            }
+                            if(trace != null){
+                                trace.record(TraceRecorder.BLOCK, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                            }
 
+                            tasks.remove(t);
                             blocked.add(t);
+                        }
+
+                    }
+                    else if(current.op == Activity.VREQUEST){
+
+                        // if the request exceeds its claim for any resource, then abort and release its resources
+                        int over = exceededClaim(t, current);
+                        if(over >= 0){
+
+                            out.println("During cycle " + cycle + "-" + (cycle + 1) + " of Banker's algorithm");
+                            out.print("\tTask " + t.taskID + "'s request exceeds its claim; aborted; ");
+                            out.println(resource_claims.get(t.taskID-1, over) + " units available next cycle");
+
+                            //abort and return resources
+                            tasks = abortUnsafeTask(tasks, t.taskID);
+
+                        }
+                        // try to claim every resource of the vector at once
+                        else if(!t.isBlocked && SafetyCheck.covers(available, current.amounts) && safety.isSafeVector(t.taskID-1, current.amounts, available)){
+                            grantVector(t, current);
+                            t.activities.poll();
+
+                        }else{
+                            // don't grant the request and block the task
+                            t.waiting_time++;
+                            t.isBlocked = true;
+                            int resource = shortResource(current);
+                            if(metrics != null){
+                                metrics.deny(resource);
+                            }
+                            if(trace != null){
+                                trace.record(TraceRecorder.BLOCK, cycle, t.taskID-1, resource, current.amounts[resource]);
+                            }
+
                             tasks.remove(t);
+                            blocked.add(t);
                         }
 
                     }
-                    else if(current.type.equals("release")){
+                    else if(current.op == Activity.RELEASE){
 
                         // release the current task's resources into freed
-                        resource_claims[t.taskID-1][current.resourceID-1] -= current.amount;
-                        freed.set(current.resourceID-1, freed.get(current.resourceID-1) + current.amount);
+                        resource_claims.add(t.taskID-1, current.resourceID-1, -current.amount);
+                        freed[current.resourceID-1] += current.amount;
+                        safety.changed(t.taskID-1, current.resourceID-1);
                         t.activities.poll();
+                        if(trace != null){
+                            trace.record(TraceRecorder.RELEASE, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                        }
 
                     }
 
-                    else if (current.type.equals("terminate")){
+                    else if (current.op == Activity.TERMINATE){
 
                         //terminate the task -- set the finish time and remove it from the queue
                         t.total_time = cycle;
                         finished_tasks.add(t);
                         tasks.remove(t);
+                        safety.retire(t.taskID-1);
+                        if(trace != null){
+                            trace.record(TraceRecorder.TERMINATE, cycle, t.taskID-1, -1, 0);
+                        }
 
                         t.activities.poll();
                     }
@@ -157,15 +266,20 @@ public class Banker {
             ///// (3) add all unblocked tasks back to ready queue /////
             for(Task t : blocked){
                 if(t.isBlocked == false){
-                    tasks.add(t);
                     blocked.remove(t);
+                    tasks.add(t);
                 }
             }
 
             ///// (4) move freed resources to available /////
-            for(int i=0; i<available.size(); i++){
-                available.set(i, available.get(i) + freed.get(i));
-                freed.set(i, 0);
+            for(int i=0; i<available.length; i++){
+                if(freed[i] != 0){
+                    available[i] += freed[i];
+                    freed[i] = 0;
+                }
+            }
+            if(metrics != null){
+                metrics.endCycle(cycle, tasks.size(), blocked.size());
             }
 
 
@@ -184,33 +298,51 @@ public class Banker {
 //            Util.print2DArray(resource_claims);
 //
 //            System.out.println("\navailable:");
-//            System.out.println(available.toString() + "\n");
+//            System.out.println(Arrays.toString(available) + "\n");
 
         }
 
 
-        // print output //
-        System.out.println("\nBANKER'S");
-        Util.sortTasksByID(finished_tasks);
+        return Result.fromTasks("BANKER'S", finished_tasks);
+    }
 
-        int time_sum = 0;
-        int wait_sum = 0;
 
-        for(Task t : finished_tasks){
-            if(t.isAborted){
-                System.out.println("Task " + t.taskID + "\taborted");
-            }else{
-                Util.printTaskSumamry(t);
-                time_sum += t.total_time;
-                wait_sum += t.waiting_time;
+    // grant every resource of a vector request
+    private void grantVector(Task t, Activity request){
+        for(int j=0; j<request.amounts.length; j++){
+            int amount = request.amounts[j];
+            if(amount == 0){
+                continue;
+            }
+            resource_claims.add(t.taskID-1, j, amount);
+            available[j] -= amount;
+            safety.changed(t.taskID-1, j);
+            if(metrics != null){
+                metrics.grant(j);
+            }
+            if(trace != null){
+                trace.record(TraceRecorder.GRANT, cycle, t.taskID-1, j, amount);
             }
         }
-        System.out.print("total" + "\t" + time_sum + "\t" + wait_sum + "\t");
+    }
 
-        int percent_total = Math.round(((float) wait_sum / (float) time_sum) * 100);
-        System.out.println(percent_total + "%");
 
+    // the first resource for which a vector request goes over the task's claim (-1 if there is none)
+    private int exceededClaim(Task t, Activity request){
+        for(int j=0; j<request.amounts.length; j++){
+            if(request.amounts[j] + resource_claims.get(t.taskID-1, j) > t.initial_claims[j]){
+                return j;
+            }
+        }
+        return -1;
+    }
 
+
+    // the resource a denied vector request is reported on: the first one that is short (its first resource if the
+    // units are there but granting them would be unsafe)
+    private int shortResource(Activity request){
+        int j = SafetyCheck.firstShort(request.amounts, available);
+        return j < 0 ? request.resourceID-1 : j;
     }
 
 
@@ -218,7 +350,14 @@ public class Banker {
 
 
     // simulate what would happen if the next request is granted
+    // (reference version that works on copies of every task; runBanker() uses SafetyCheck instead)
     public static boolean isSafe(Task task, LinkedBlockingQueue<Task> tasks, ArrayList<Integer> available, int[][] claims){
+        return isSafe(task, tasks, available, claims, null);
+    }
+
+
+    // like isSafe(), but an unsafe state's leftover claims are printed to dump (if it isn't null)
+    public static boolean isSafe(Task task, LinkedBlockingQueue<Task> tasks, ArrayList<Integer> available, int[][] claims, PrintStream dump){
 
         // if there are no processes remaining, the state is safe
         if(tasks.size() == 0){
@@ -273,7 +412,9 @@ public class Banker {
             for(int i=0; i<claims.length; i++){
                 for(int j=0; j<claims[0].length; j++){
                     if(claims[i][j] != 0){
-                        Util.print2DArray(claims);
+                        if(dump != null){
+                            Util.print2DArray(claims, dump);
+                        }
                         return false;
                     }
                 }
@@ -315,7 +456,7 @@ public class Banker {
 
 
     // abort a task and release its resources
-    public static LinkedBlockingQueue<Task> abortUnsafeTask(LinkedBlockingQueue<Task> ready_tasks, int task_id){
+    public TaskList abortUnsafeTask(TaskList ready_tasks, int task_id){
         for(Task t : ready_tasks){
             if(t.taskID == task_id){
 
@@ -323,12 +464,22 @@ public class Banker {
                 t.isAborted = true;
                 finished_tasks.add(t);
                 ready_tasks.remove(t);
+                safety.retire(t.taskID-1);
 
                 //release all of t's claims and add them back to available
-                for(int j=0; j<resource_claims[t.taskID-1].length; j++){
-                    int claim = resource_claims[t.taskID-1][j];
-                    resource_claims[t.taskID-1][j] = 0;
-                    available.set(j, available.get(j) + claim);
+                int released = 0;
+                for(int j=0; j<resource_claims.columns; j++){
+                    int claim = resource_claims.get(t.taskID-1, j);
+                    resource_claims.set(t.taskID-1, j, 0);
+                    safety.changed(t.taskID-1, j);
+                    available[j] += claim;
+                    released += claim;
+                }
+                if(metrics != null){
+                    metrics.abort(cycle, t.taskID-1, released);
+                }
+                if(trace != null){
+                    trace.record(TraceRecorder.ABORT, cycle, t.taskID-1, -1, released);
                 }
             }
         }
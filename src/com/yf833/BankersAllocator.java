@@ -0,0 +1,403 @@
+package com.yf833;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+
+// the banker's algorithm as a resource allocator for real threads: every client declares its maximum claim up front,
+// then acquires and releases units; a request is only granted if the allocator stays in a safe state (every client
+// could still get its whole claim in some order), so clients that follow their claims can never deadlock
+//
+// grants that are obviously safe take no lock: if the units left after the grant still cover the largest claim any
+// client has on that resource, every client can finish in the order of any earlier safe sequence, so the grant is a
+// single compare-and-set. other requests take the lock and run the full safety check (the multi-resource version of
+// Banker.isSafe) on a snapshot. a request that can't be granted waits on the resources that were short in that check
+// and is only woken by releases of those resources. waiting uses a ReentrantLock condition, so it works the same
+// for platform and virtual threads.
+public class BankersAllocator {
+
+
+    // a declared maximum claim; the handle its client acquires and releases units through
+    public static class Claim {
+
+        private BankersAllocator allocator;
+        private int[] max;                  // the declared maximum claim for each resource
+        private AtomicIntegerArray held;    // units currently held of each resource
+        private boolean closed = false;
+
+        private Claim(BankersAllocator allocator, int[] max){
+            this.allocator = allocator;
+            this.max = max.clone();
+            this.held = new AtomicIntegerArray(max.length);
+        }
+
+        // acquire units of a resource, waiting as long as it takes
+        public void acquire(int resource, int units) throws InterruptedException {
+            allocator.acquire(this, resource, units, false, 0);
+        }
+
+        // acquire units of a resource, waiting at most the given time; returns false if the time ran out
+        public boolean tryAcquire(int resource, int units, long timeout, TimeUnit unit) throws InterruptedException {
+            return allocator.acquire(this, resource, units, true, unit.toNanos(timeout));
+        }
+
+        // give back units of a resource
+        public void release(int resource, int units){
+            allocator.release(this, resource, units);
+        }
+
+        // units currently held of a resource
+        public int held(int resource){
+            return held.get(resource);
+        }
+
+        // release everything still held and withdraw the claim
+        public void close(){
+            allocator.close(this);
+        }
+    }
+
+
+    public LongAdder fast_grants = new LongAdder();     // grants made without the lock
+    public LongAdder slow_grants = new LongAdder();     // grants made after a full safety check
+    public LongAdder waits = new LongAdder();           // times a request had to wait
+
+    private int[] units;                    // units present of each resource
+    private AtomicLongArray state;          // for each resource: (lock-free grant stamp << 32) | available units
+    private AtomicIntegerArray max_claim;   // the largest claim any open client has on each resource
+    private AtomicLong releases;            // (completed releases << 32) | releases in progress (snapshots retry around them)
+
+    private ReentrantLock lock = new ReentrantLock();
+    private ArrayList<Claim> claims = new ArrayList<>();                // open claims (guarded by lock)
+    private ArrayList<ArrayList<Condition>> waiters = new ArrayList<>(); // waiting requests on each resource (guarded by lock)
+    private AtomicIntegerArray waiting;                                  // size of each waiters list
+
+
+    // constructor //
+    public BankersAllocator(int[] units){
+        this.units = units.clone();
+        this.state = new AtomicLongArray(units.length);
+        this.max_claim = new AtomicIntegerArray(units.length);
+        this.waiting = new AtomicIntegerArray(units.length);
+        this.releases = new AtomicLong();
+        for(int j=0; j<units.length; j++){
+            if(units[j] < 0){
+                throw new IllegalArgumentException("resource " + j + " has a negative number of units");
+            }
+            state.set(j, units[j]);
+            waiters.add(new ArrayList<Condition>());
+        }
+    }
+
+
+    public int numResources(){
+        return units.length;
+    }
+
+
+    // units of a resource that are not held by any client
+    public int available(int resource){
+        return (int) state.get(resource);
+    }
+
+
+    // declare a client's maximum claim (one entry per resource)
+    public Claim declareClaim(int[] max){
+        if(max.length != units.length){
+            throw new IllegalArgumentException("claim has " + max.length + " entries for " + units.length + " resources");
+        }
+        for(int j=0; j<max.length; j++){
+            if(max[j] < 0 || max[j] > units[j]){
+                throw new IllegalArgumentException("claim for resource " + j + " (" + max[j] + ") exceeds number of units present (" + units[j] + ")");
+            }
+        }
+
+        Claim c = new Claim(this, max);
+        lock.lock();
+        try{
+            claims.add(c);
+            for(int j=0; j<max.length; j++){
+                if(max[j] > max_claim.get(j)){
+                    // raise the bound first, then bump the stamp so a lock-free grant that read the old bound fails its CAS
+                    max_claim.set(j, max[j]);
+                    bumpStamp(j);
+                }
+            }
+        }finally{
+            lock.unlock();
+        }
+        return c;
+    }
+
+
+    private boolean acquire(Claim c, int r, int units, boolean timed, long nanos) throws InterruptedException {
+        checkOpen(c);
+        if(units < 0 || c.held.get(r) + units > c.max[r]){
+            throw new IllegalArgumentException("request for " + units + " units of resource " + r + " exceeds the claim (" + c.max[r] + ", holding " + c.held.get(r) + ")");
+        }
+        if(units == 0 || tryFastGrant(c, r, units)){
+            return true;
+        }
+
+        lock.lockInterruptibly();
+        Condition cond = null;
+        boolean[] registered = new boolean[this.units.length];
+        try{
+            while(true){
+                boolean[] short_resources = tryGrant(c, r, units);
+                if(short_resources == null){
+                    slow_grants.increment();
+                    return true;
+                }
+
+                // wait on every resource that was short; after adding any, check again so that a release that
+                // finished before this waiter was registered isn't missed
+                if(cond == null){
+                    cond = lock.newCondition();
+                }
+                boolean added = false;
+                for(int j=0; j<short_resources.length; j++){
+                    if(short_resources[j] && !registered[j]){
+                        registered[j] = true;
+                        waiters.get(j).add(cond);
+                        waiting.incrementAndGet(j);
+                        added = true;
+                    }
+                }
+                if(added){
+                    continue;
+                }
+
+                waits.increment();
+                if(!timed){
+                    cond.await();
+                }else if(nanos <= 0){
+                    return false;
+                }else{
+                    nanos = cond.awaitNanos(nanos);
+                }
+            }
+        }finally{
+            for(int j=0; j<registered.length; j++){
+                if(registered[j]){
+                    waiters.get(j).remove(cond);
+                    waiting.decrementAndGet(j);
+                }
+            }
+            lock.unlock();
+        }
+    }
+
+
+    // grant without the lock if the units left still cover every client's claim on the resource
+    private boolean tryFastGrant(Claim c, int r, int units){
+        while(true){
+            long word = state.get(r);
+            int available = (int) word;
+            if(available - units < max_claim.get(r)){
+                return false;
+            }
+            if(state.compareAndSet(r, word, word - units + (1L << 32))){
+                c.held.addAndGet(r, units);
+                fast_grants.increment();
+                return true;
+            }
+        }
+    }
+
+
+    // with the lock held: run the safety check on a snapshot and grant the request if it is safe
+    // returns null if granted, otherwise the resources that some client was short of
+    private boolean[] tryGrant(Claim c, int r, int units){
+        int n = claims.size();
+        int m = this.units.length;
+        int[][] held = new int[n][m];
+        int[] available = new int[m];
+        long[] stamp = new long[m];
+
+        while(true){
+            snapshot(held, available, stamp);
+
+            if(units > available[r]){
+                boolean[] short_resources = new boolean[m];
+                short_resources[r] = true;
+                return short_resources;
+            }
+
+            boolean[] short_resources = unsafeResources(claims.indexOf(c), r, units, held, available);
+            if(short_resources != null){
+                return short_resources;
+            }
+
+            // apply the grant unless a lock-free grant took units of r since the snapshot (releases only help)
+            long word = state.get(r);
+            while(word >>> 32 == stamp[r] && !state.compareAndSet(r, word, word - units)){
+                word = state.get(r);
+            }
+            if(word >>> 32 == stamp[r]){
+                c.held.addAndGet(r, units);
+                return null;
+            }
+        }
+    }
+
+
+    // copy every claim's holdings, then the available units (a lock-free grant in between only makes the copy more
+    // conservative); retried until no release overlapped it
+    private void snapshot(int[][] held, int[] available, long[] stamp){
+        while(true){
+            long before = releases.get();
+            if((int) before != 0){
+                Thread.onSpinWait();
+                continue;
+            }
+            for(int i=0; i<held.length; i++){
+                Claim c = claims.get(i);
+                for(int j=0; j<available.length; j++){
+                    held[i][j] = c.held.get(j);
+                }
+            }
+            for(int j=0; j<available.length; j++){
+                long word = state.get(j);
+                available[j] = (int) word;
+                stamp[j] = word >>> 32;
+            }
+            if(releases.get() == before){
+                return;
+            }
+        }
+    }
+
+
+    // banker's safety check for granting units of r to claim k: keep finishing any client whose remaining claim fits
+    // in what is available; returns null if every client can finish, otherwise the resources the rest are short of
+    private boolean[] unsafeResources(int k, int r, int units, int[][] held, int[] available){
+        int n = held.length;
+        int m = available.length;
+        int[] work = available.clone();
+        work[r] -= units;
+        held[k][r] += units;
+
+        boolean[] finished = new boolean[n];
+        int remaining = n;
+        boolean progress = true;
+        while(progress){
+            progress = false;
+            for(int i=0; i<n; i++){
+                if(!finished[i] && fits(claims.get(i).max, held[i], work)){
+                    for(int j=0; j<m; j++){
+                        work[j] += held[i][j];
+                    }
+                    finished[i] = true;
+                    remaining--;
+                    progress = true;
+                }
+            }
+        }
+        if(remaining == 0){
+            return null;
+        }
+
+        boolean[] short_resources = new boolean[m];
+        for(int i=0; i<n; i++){
+            if(!finished[i]){
+                for(int j=0; j<m; j++){
+                    if(claims.get(i).max[j] - held[i][j] > work[j]){
+                        short_resources[j] = true;
+                    }
+                }
+            }
+        }
+        return short_resources;
+    }
+
+
+    // true if a client's max additional request fits in work for every resource
+    private static boolean fits(int[] max, int[] held, int[] work){
+        for(int j=0; j<work.length; j++){
+            if(max[j] - held[j] > work[j]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void release(Claim c, int r, int units){
+        checkOpen(c);
+        if(units < 0 || units > c.held.get(r)){
+            throw new IllegalArgumentException("release of " + units + " units of resource " + r + " exceeds the " + c.held.get(r) + " held");
+        }
+        if(units == 0){
+            return;
+        }
+
+        releases.incrementAndGet();
+        c.held.addAndGet(r, -units);
+        long word = state.get(r);
+        while(!state.compareAndSet(r, word, word + units)){
+            word = state.get(r);
+        }
+        releases.addAndGet((1L << 32) - 1);
+
+        // wake the requests that were short of this resource
+        if(waiting.get(r) != 0){
+            lock.lock();
+            try{
+                for(Condition cond : waiters.get(r)){
+                    cond.signal();
+                }
+            }finally{
+                lock.unlock();
+            }
+        }
+    }
+
+
+    private void close(Claim c){
+        if(c.closed){
+            return;
+        }
+        for(int j=0; j<units.length; j++){
+            release(c, j, c.held.get(j));
+        }
+        lock.lock();
+        try{
+            c.closed = true;
+            claims.remove(c);
+            // lower the bounds to the largest remaining claims (a lock-free grant that read a higher bound was safe)
+            for(int j=0; j<units.length; j++){
+                int bound = 0;
+                for(Claim other : claims){
+                    bound = Math.max(bound, other.max[j]);
+                }
+                max_claim.set(j, bound);
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+
+
+    private void checkOpen(Claim c){
+        if(c.allocator != this || c.closed){
+            throw new IllegalStateException("claim is closed or belongs to another allocator");
+        }
+    }
+
+
+    private void bumpStamp(int j){
+        long word = state.get(j);
+        while(!state.compareAndSet(j, word, word + (1L << 32))){
+            word = state.get(j);
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.yf833;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+
+
+// runs many scenarios in parallel on a fork-join pool; every scenario gets its own simulator instances and its
+// own output buffer, and the results are collected per scenario (in the order the scenarios were given)
+public class BatchRunner {
+
+
+    // the outcome of one scenario
+    public static class ScenarioResult {
+        public String name;             // the scenario's name (its file name for input files)
+        public Result fifo;             // result of the optimistic (FIFO) run
+        public Result banker;           // result of the banker run
+        public String output;           // everything the two runs printed, in the same layout as Main
+        public Throwable error;         // set if the scenario could not be parsed or simulated
+    }
+
+
+    ///// MAIN /////
+    // usage: BatchRunner [--large] [--threads N] <input file or directory>...
+    public static void main(String[] args) throws Exception {
+
+        boolean large = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        ArrayList<File> files = new ArrayList<>();
+
+        for(int i=0; i<args.length; i++){
+            if(args[i].equals("--large")){
+                large = true;
+            }else if(args[i].equals("--threads")){
+                threads = Integer.parseInt(args[++i]);
+            }else{
+                files.addAll(inputFiles(new File(args[i])));
+            }
+        }
+        if(files.isEmpty()){
+            throw new IllegalArgumentException("usage: BatchRunner [--large] [--threads N] <input file or directory>...");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<ScenarioResult> results = runFiles(files, large, pool);
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        // written out in one go once every scenario has finished
+        StringBuilder sb = new StringBuilder();
+        int failed = 0;
+        for(ScenarioResult r : results){
+            sb.append("===== ").append(r.name).append(" =====").append(System.lineSeparator());
+            if(r.error != null){
+                sb.append("error: ").append(r.error).append(System.lineSeparator());
+                failed++;
+            }else{
+                sb.append(r.output);
+            }
+            sb.append(System.lineSeparator());
+        }
+        System.out.print(sb);
+        System.out.flush();
+        System.err.printf("%d scenarios (%d failed) in %.1f ms on %d threads%n", results.size(), failed, elapsed / 1e6, threads);
+    }
+
+
+    // parse and run every input file in parallel
+    public static List<ScenarioResult> runFiles(List<File> files, final boolean large, ForkJoinPool pool) throws InterruptedException {
+        ArrayList<Callable<ScenarioResult>> jobs = new ArrayList<>();
+        for(final File file : files){
+            jobs.add(new Callable<ScenarioResult>() {
+                public ScenarioResult call() {
+                    try{
+                        return runScenario(file.getName(), InputParser.parse(file), large);
+                    }catch(Exception e){
+                        return failure(file.getName(), e);
+                    }
+                }
+            });
+        }
+        return collect(pool.invokeAll(jobs));
+    }
+
+
+    // run a list of already parsed scenarios in parallel
+    public static List<ScenarioResult> runScenarios(List<String> names, List<Scenario> scenarios, final boolean large, ForkJoinPool pool) throws InterruptedException {
+        ArrayList<Callable<ScenarioResult>> jobs = new ArrayList<>();
+        for(int k=0; k<scenarios.size(); k++){
+            final String name = names.get(k);
+            final Scenario scenario = scenarios.get(k);
+            jobs.add(new Callable<ScenarioResult>() {
+                public ScenarioResult call() {
+                    try{
+                        return runScenario(name, scenario, large);
+                    }catch(RuntimeException e){
+                        return failure(name, e);
+                    }
+                }
+            });
+        }
+        return collect(pool.invokeAll(jobs));
+    }
+
+
+    // run the FIFO and banker simulations for one scenario (on the calling thread)
+    public static ScenarioResult runScenario(String name, Scenario scenario, boolean large){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer);
+
+        ScenarioResult result = new ScenarioResult();
+        result.name = name;
+
+        if(large){
+            Program program = Program.compile(scenario);
+            result.fifo = new TableSimulator(new TaskTable(program), scenario.resourceAmounts(), false, false, out).run();
+            result.banker = new TableSimulator(new TaskTable(program), scenario.resourceAmounts(), true, false, out).run();
+        }else{
+            result.fifo = new Optimistic(scenario.toTasks(), scenario.resourceAmounts()).run();
+            result.banker = new Banker(scenario.toTasks(), scenario.resourceAmounts(), out).run();
+        }
+
+        // only the banker prints anything while running
+        out.flush();
+        Report report = new Report();
+        report.add(result.fifo, "");
+        report.add(result.banker, buffer.toString());
+        result.output = report.render("text");
+        return result;
+    }
+
+
+    // expand a directory into the input files it contains (sorted by name)
+    private static List<File> inputFiles(File path){
+        if(!path.isDirectory()){
+            return Arrays.asList(path);
+        }
+        File[] files = path.listFiles();
+        Arrays.sort(files);
+        ArrayList<File> inputs = new ArrayList<>();
+        for(File f : files){
+            if(f.isFile()){
+                inputs.add(f);
+            }
+        }
+        return inputs;
+    }
+
+
+    private static ScenarioResult failure(String name, Throwable error){
+        ScenarioResult result = new ScenarioResult();
+        result.name = name;
+        result.error = error;
+        return result;
+    }
+
+
+    private static List<ScenarioResult> collect(List<Future<ScenarioResult>> futures) throws InterruptedException {
+        ArrayList<ScenarioResult> results = new ArrayList<>();
+        for(Future<ScenarioResult> f : futures){
+            try{
+                results.add(f.get());
+            }catch(ExecutionException e){
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+}
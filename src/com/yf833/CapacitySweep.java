@@ -0,0 +1,380 @@
+package com.yf833;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+
+
+// capacity planning: runs one scenario with many different numbers of units of each resource type and reports
+// (1) the smallest configurations for which the FIFO manager aborts nothing, (2) the Pareto frontier of total units
+// against the banker's waiting percentage, and (3) the smallest configurations that keep the banker at or under a
+// target waiting percentage
+//
+// configurations are simulated in parallel on a fork-join pool, one level (total # of units) at a time from the
+// smallest up. the scenario is compiled once and the read-only Program is shared by every simulation
+// the search assumes more units never make FIFO abort more tasks, and skips any configuration with at least as many
+// units of every resource as one where FIFO aborted nothing (it can't be one of the smallest). the banker's waiting
+// time is not monotone (more units can change the order in which tasks are granted, and so wait longer), so a banker
+// run is only skipped if it dominates a configuration where the banker never waited, which nothing can improve on
+//
+// usage: CapacitySweep [--units LO:HI[:STEP] | --units LO:HI,LO:HI,...] [--target PERCENT] [--threads N] [--limit N] [--no-prune] <input file>
+public class CapacitySweep {
+
+    // the outcome of one configuration
+    public static class Point {
+        public int[] units;             // units of each resource type
+        public int total;               // sum of units
+        public boolean fifo_run;        // false if the FIFO run was skipped by pruning
+        public int fifo_aborts;         // # of tasks the FIFO manager aborted
+        public boolean banker_run;      // false if the banker run was skipped by pruning
+        public int banker_aborts;       // # of tasks the banker aborted
+        public long banker_wait;        // banker's total waiting time and total time (over tasks that weren't aborted)
+        public long banker_time;
+
+        // banker's waiting time as a fraction of total time
+        public double waitFraction(){
+            return banker_time == 0 ? 0 : (double) banker_wait / banker_time;
+        }
+
+        public String toString(){
+            return Arrays.toString(units);
+        }
+    }
+
+    public int[] lo;                    // smallest and largest units tried for each resource type
+    public int[] hi;
+    public int[] step;
+    public double target = 10;          // banker waiting percentage to stay at or under
+    public int limit = 100000;          // refuse sweeps with more configurations than this
+    public boolean prune = true;        // skip simulations that monotonicity says can't change the report
+
+    public int simulated = 0;           // simulations run
+    public int pruned = 0;              // simulations skipped by monotonicity
+
+    private Program program;
+    private ArrayList<Point> points = new ArrayList<>();       // every configuration, in the order it was swept
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        public void write(int b) {}
+        public void write(byte[] b, int off, int len) {}
+    });
+
+
+    // constructor: sweep each resource from its largest claim to twice the units in the scenario //
+    public CapacitySweep(Scenario scenario){
+        this.program = Program.compile(scenario);
+        int m = scenario.num_resources;
+        lo = new int[m];
+        hi = new int[m];
+        step = new int[m];
+        int[] max_claim = maxClaims(program);
+        for(int j=0; j<m; j++){
+            lo[j] = Math.max(1, max_claim[j]);
+            hi[j] = Math.max(lo[j], 2 * scenario.resource_amounts[j]);
+            step[j] = 1;
+        }
+    }
+
+
+    ///// MAIN /////
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String units = null;
+        double target = -1;
+        int limit = -1;
+        boolean prune = true;
+
+        for(int i=0; i<args.length-1; i++){
+            if(args[i].equals("--units")){
+                units = args[++i];
+            }else if(args[i].equals("--target")){
+                target = Double.parseDouble(args[++i]);
+            }else if(args[i].equals("--threads")){
+                threads = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--limit")){
+                limit = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--no-prune")){
+                prune = false;
+            }else{
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if(args.length == 0 || args[args.length-1].startsWith("--")){
+            throw new IllegalArgumentException("usage: CapacitySweep [--units LO:HI[:STEP] | --units LO:HI,LO:HI,...] [--target PERCENT] [--threads N] [--limit N] [--no-prune] <input file>");
+        }
+
+        CapacitySweep sweep = new CapacitySweep(InputParser.parse(new File(args[args.length-1])));
+        if(units != null){
+            sweep.setRanges(units);
+        }
+        if(target >= 0){
+            sweep.target = target;
+        }
+        if(limit > 0){
+            sweep.limit = limit;
+        }
+        sweep.prune = prune;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        sweep.run(pool);
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.print(sweep.report());
+        System.err.printf("%d configurations, %d simulations run, %d skipped, %.1f ms on %d threads%n",
+                sweep.points.size(), sweep.simulated, sweep.pruned, elapsed / 1e6, threads);
+    }
+
+
+    // set the ranges from "LO:HI[:STEP]" (every resource) or a comma separated list with one range per resource
+    public void setRanges(String spec){
+        String[] ranges = spec.split(",");
+        if(ranges.length != 1 && ranges.length != lo.length){
+            throw new IllegalArgumentException("expected 1 or " + lo.length + " ranges, got " + ranges.length);
+        }
+        for(int j=0; j<lo.length; j++){
+            String[] parts = ranges[ranges.length == 1 ? 0 : j].split(":");
+            if(parts.length < 2 || parts.length > 3){
+                throw new IllegalArgumentException("Unknown range " + ranges[j]);
+            }
+            lo[j] = Integer.parseInt(parts[0]);
+            hi[j] = Integer.parseInt(parts[1]);
+            step[j] = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+            if(lo[j] < 0 || hi[j] < lo[j] || step[j] < 1){
+                throw new IllegalArgumentException("Bad range " + ranges[j]);
+            }
+        }
+    }
+
+
+    // sweep every configuration (level by level, the configurations of each level in parallel)
+    public void run(ForkJoinPool pool) throws InterruptedException {
+        ArrayList<ArrayList<Point>> levels = enumerate();
+
+        ArrayList<Point> no_aborts = new ArrayList<>();     // configurations where FIFO aborted nothing
+        ArrayList<Point> no_wait = new ArrayList<>();       // configurations where the banker aborted nothing and never waited
+
+        for(ArrayList<Point> level : levels){
+            ArrayList<Callable<Point>> jobs = new ArrayList<>();
+            for(final Point p : level){
+                final boolean fifo = !prune || !dominatesAny(p, no_aborts);
+                final boolean banker = !prune || !dominatesAny(p, no_wait);
+                pruned += (fifo ? 0 : 1) + (banker ? 0 : 1);
+                if(fifo || banker){
+                    jobs.add(new Callable<Point>() {
+                        public Point call() {
+                            evaluate(p, fifo, banker);
+                            return p;
+                        }
+                    });
+                }
+            }
+            for(Future<Point> f : pool.invokeAll(jobs)){
+                try{
+                    f.get();
+                }catch(ExecutionException e){
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+
+            // what this level found prunes the levels above it
+            for(Point p : level){
+                if(p.fifo_run && p.fifo_aborts == 0){
+                    no_aborts.add(p);
+                }
+                if(p.banker_run && p.banker_aborts == 0 && p.banker_wait == 0){
+                    no_wait.add(p);
+                }
+            }
+        }
+        simulated = 2 * points.size() - pruned;
+    }
+
+
+    // run the simulations a configuration needs (on the calling thread)
+    private void evaluate(Point p, boolean fifo, boolean banker){
+        ArrayList<Integer> amounts = new ArrayList<>();
+        for(int u : p.units){
+            amounts.add(u);
+        }
+        if(fifo){
+            Result r = new TableSimulator(new TaskTable(program), amounts, false, true, DISCARD).run();
+            p.fifo_aborts = aborts(r);
+            p.fifo_run = true;
+        }
+        if(banker){
+            Result r = new TableSimulator(new TaskTable(program), amounts, true, true, DISCARD).run();
+            p.banker_aborts = aborts(r);
+            p.banker_wait = r.waitSum();
+            p.banker_time = r.timeSum();
+            p.banker_run = true;
+        }
+    }
+
+
+    // the text report
+    public String report(){
+        String nl = System.lineSeparator();
+        StringBuilder sb = new StringBuilder();
+        sb.append("resource ranges:");
+        for(int j=0; j<lo.length; j++){
+            sb.append(' ').append(lo[j]).append(':').append(hi[j]);
+            if(step[j] != 1){
+                sb.append(':').append(step[j]);
+            }
+        }
+        sb.append(nl).append(nl);
+
+        sb.append("FIFO: smallest configurations with no aborts").append(nl);
+        ArrayList<Point> minimal = new ArrayList<>();
+        for(Point p : points){
+            if(p.fifo_run && p.fifo_aborts == 0 && !dominatesAny(p, minimal)){
+                minimal.add(p);
+                sb.append("  ").append(p).append("  total ").append(p.total).append(nl);
+            }
+        }
+        if(minimal.isEmpty()){
+            sb.append("  none in range").append(nl);
+        }
+        sb.append(nl);
+
+        sb.append("BANKER'S: Pareto frontier of total units vs waiting time (configurations without aborts)").append(nl);
+        for(Point p : frontier()){
+            sb.append("  total ").append(p.total).append("  ").append(p).append("  wait ")
+              .append(Result.percent(p.banker_wait, p.banker_time)).append('%').append(nl);
+        }
+        sb.append(nl);
+
+        sb.append("BANKER'S: smallest configurations with waiting time <= ").append(target).append('%').append(nl);
+        ArrayList<Point> fit = new ArrayList<>();
+        for(Point p : points){
+            if(p.banker_run && p.banker_aborts == 0 && 100 * p.waitFraction() <= target && !dominatesAny(p, fit)){
+                fit.add(p);
+                sb.append("  ").append(p).append("  total ").append(p.total).append("  wait ")
+                  .append(Result.percent(p.banker_wait, p.banker_time)).append('%').append(nl);
+            }
+        }
+        if(fit.isEmpty()){
+            sb.append("  none in range").append(nl);
+        }
+        return sb.toString();
+    }
+
+
+    // banker configurations without aborts that no other beats on both total units and waiting time
+    public List<Point> frontier(){
+        ArrayList<Point> frontier = new ArrayList<>();
+        double best = Double.POSITIVE_INFINITY;
+        // points are in order of total units, so a point is on the frontier if it waits less than every point before it
+        // (and replaces the last one if that has the same total)
+        for(Point p : points){
+            if(p.banker_run && p.banker_aborts == 0 && p.waitFraction() < best){
+                best = p.waitFraction();
+                if(!frontier.isEmpty() && frontier.get(frontier.size()-1).total == p.total){
+                    frontier.remove(frontier.size()-1);
+                }
+                frontier.add(p);
+            }
+        }
+        return frontier;
+    }
+
+
+    // every configuration in the ranges, grouped by total # of units (smallest first)
+    private ArrayList<ArrayList<Point>> enumerate(){
+        int m = lo.length;
+        long count = 1;
+        for(int j=0; j<m; j++){
+            count *= (hi[j] - lo[j]) / step[j] + 1;
+            if(count > limit){
+                throw new IllegalArgumentException("more than " + limit + " configurations; narrow the ranges or raise --limit");
+            }
+        }
+
+        ArrayList<Point> all = new ArrayList<>();
+        int[] units = lo.clone();
+        while(true){
+            Point p = new Point();
+            p.units = units.clone();
+            for(int u : units){
+                p.total += u;
+            }
+            all.add(p);
+
+            // next configuration (like an odometer)
+            int j = 0;
+            while(j < m && units[j] + step[j] > hi[j]){
+                units[j] = lo[j];
+                j++;
+            }
+            if(j == m){
+                break;
+            }
+            units[j] += step[j];
+        }
+
+        Collections.sort(all, new Comparator<Point>() {
+            public int compare(Point a, Point b) {
+                return Integer.compare(a.total, b.total);
+            }
+        });
+        points = all;
+        ArrayList<ArrayList<Point>> levels = new ArrayList<>();
+        for(Point p : all){
+            if(levels.isEmpty() || levels.get(levels.size()-1).get(0).total != p.total){
+                levels.add(new ArrayList<Point>());
+            }
+            levels.get(levels.size()-1).add(p);
+        }
+        return levels;
+    }
+
+
+    // true if p has at least as many units of every resource as one of the given configurations
+    private static boolean dominatesAny(Point p, List<Point> others){
+        for(Point q : others){
+            boolean dominates = true;
+            for(int j=0; j<p.units.length && dominates; j++){
+                dominates = p.units[j] >= q.units[j];
+            }
+            if(dominates){
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static int aborts(Result r){
+        int n = 0;
+        for(boolean a : r.aborted){
+            if(a){
+                n++;
+            }
+        }
+        return n;
+    }
+
+
+    // the largest initial claim of each resource type in a program
+    private static int[] maxClaims(Program program){
+        int[] max = new int[program.num_resources];
+        for(int pc=0; pc<program.op.length; pc++){
+            if(program.op[pc] == Program.INITIATE){
+                max[program.resource[pc]] = Math.max(max[program.resource[pc]], program.amount[pc]);
+            }
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.yf833;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+
+// takes periodic snapshots of a TableSimulator so that a long run can be resumed after a crash
+// the simulation thread only copies its state into memory; a background thread compresses it and writes it next to
+// the snapshot file, then renames it over the file, so the file always holds a complete snapshot. if the writer is
+// still busy with the last two snapshots, the new one is skipped (and counted) rather than waited for
+//
+// file layout (gzip, big-endian): magic "DLSN", version, the messages printed so far (length, bytes), then the
+// simulator state (see TableSimulator.writeState)
+public class Checkpointer {
+
+    public static final int MAGIC = 0x444c534e;     // "DLSN"
+    public static final int VERSION = 3;
+
+    public long taken = 0;              // snapshots handed to the writer
+    public long skipped = 0;            // snapshots skipped because the writer was busy
+
+    private File file;
+    private int every;                  // cycles between snapshots
+    private int next_cycle;             // the first cycle at which the next snapshot is due
+    private ByteArrayOutputStream messages;     // what the simulation has printed so far (saved with every snapshot)
+
+    private ArrayBlockingQueue<byte[]> pending = new ArrayBlockingQueue<>(1);  // snapshots waiting for the writer
+    private Thread writer;
+    private volatile IOException failure;
+    private static final byte[] END = new byte[0];                             // tells the writer to finish
+
+
+    // constructor //
+    public Checkpointer(File file, int every, ByteArrayOutputStream messages){
+        if(every < 1){
+            throw new IllegalArgumentException("checkpoint interval must be positive");
+        }
+        this.file = file;
+        this.every = every;
+        this.next_cycle = every;
+        this.messages = messages;
+
+        writer = new Thread(new Runnable() {
+            public void run() {
+                writeLoop();
+            }
+        }, "checkpoint-writer " + file.getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    // true if a snapshot should be taken before running the given cycle
+    public boolean due(int cycle){
+        return cycle >= next_cycle;
+    }
+
+
+    // copy the simulation's state and hand it to the writer (skipped if the writer is too far behind)
+    public void take(TableSimulator simulator, int cycle){
+        next_cycle = cycle + every;
+        if(pending.remainingCapacity() == 0){
+            skipped++;
+            return;
+        }
+        pending.add(capture(simulator));
+        taken++;
+    }
+
+
+    // take the last snapshot of a run, wait until it is written, and stop the writer (a failed write is rethrown)
+    public void finish(TableSimulator simulator){
+        byte[] last = capture(simulator);
+        try{
+            if(failure != null){
+                throw new UncheckedIOException(failure);
+            }
+            pending.put(last);
+            taken++;
+            pending.put(END);
+            writer.join();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        if(failure != null){
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+
+    // restore a freshly constructed simulation from a snapshot file; the messages it had printed are copied to out
+    public static void resume(File file, TableSimulator simulator, OutputStream out) throws IOException {
+        ByteBuffer in;
+        try(InputStream gzip = new GZIPInputStream(new FileInputStream(file), 1 << 16)){
+            in = ByteBuffer.wrap(gzip.readAllBytes());
+        }
+        if(in.getInt() != MAGIC){
+            throw new IOException(file + " is not a snapshot file");
+        }
+        int version = in.getInt();
+        if(version != VERSION){
+            throw new IOException(file + " has snapshot version " + version + " (expected " + VERSION + ")");
+        }
+        int printed = in.getInt();
+        out.write(in.array(), in.position(), printed);
+        in.position(in.position() + printed);
+        simulator.readState(in);
+    }
+
+
+    // the snapshot in memory (arrays are copied in bulk, so this is about as fast as copying the state)
+    private byte[] capture(TableSimulator simulator){
+        byte[] printed = messages == null ? new byte[0] : messages.toByteArray();
+        ByteBuffer out = ByteBuffer.allocate(12 + printed.length + simulator.stateSize());
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(printed.length);
+        out.put(printed);
+        simulator.writeState(out);
+        return out.array();
+    }
+
+
+    private void writeLoop(){
+        File temp = new File(file.getPath() + ".tmp");
+        try{
+            while(true){
+                byte[] snapshot = pending.take();
+                if(snapshot == END){
+                    return;
+                }
+                try(OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 1 << 16){
+                        { def.setLevel(Deflater.BEST_SPEED); }
+                    }){
+                    out.write(snapshot);
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }catch(IOException e){
+            failure = e;
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.yf833;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+
+
+// runs the FIFO and banker simulations of one scenario at the same time, each on its own thread, and lines their
+// per-task results up side by side
+// the scenario is compiled once into a Program that both runs read and neither modifies; each run only owns its
+// TaskTable, its matrices and its queues, so nothing is copied between them and nothing is shared that changes
+public class Comparison {
+
+    // one of the two runs: what it was given and its outcome
+    public static class Run {
+        public String name;             // "fifo" or "banker" (as in the names of trace files and metrics)
+        public Metrics metrics;         // where the run records its metrics (null if metrics are off)
+        public TraceRecorder trace;     // where the run traces its events (null if tracing is off)
+        public SafetyCache cache;       // the banker's safety verdict cache (null if caching is off, and for FIFO)
+        public Result result;
+        public String messages;         // what the run printed (banker aborts, opt-in dumps)
+        public long nanos;              // wall time of the run
+    }
+
+    public Run fifo;
+    public Run banker;
+    public long nanos;                  // wall time of both runs together
+
+
+    // run both simulations of a program in parallel on the given pool, with the same options as the large-scale mode:
+    // unsafe state dumps, a banker cache of the given size (0 for none), metrics in the given registry and traces
+    // under the given prefix (null for none). the metrics and trace files of both runs are set up here, before either
+    // starts, so they come out in the same order every time
+    public static Comparison run(final Program program, final ArrayList<Integer> resource_amounts, final boolean events,
+                                 final boolean sorted, final boolean dump, int cache, MetricsRegistry metrics, String trace,
+                                 ForkJoinPool pool) throws InterruptedException, IOException {
+        ArrayList<Callable<Run>> jobs = new ArrayList<>();
+        for(final boolean banker : new boolean[]{false, true}){
+            final Run run = new Run();
+            run.name = banker ? "banker" : "fifo";
+            if(metrics != null){
+                run.metrics = metrics.create(run.name, resource_amounts.size());
+            }
+            if(trace != null){
+                run.trace = new TraceRecorder(new File(trace + "." + run.name + ".trace"), program.num_tasks, program.num_resources);
+            }
+            if(banker && cache > 0){
+                run.cache = new SafetyCache(cache);
+            }
+            jobs.add(new Callable<Run>() {
+                public Run call() {
+                    return simulate(program, resource_amounts, banker, events, sorted, dump, run);
+                }
+            });
+        }
+
+        Comparison comparison = new Comparison();
+        long start = System.nanoTime();
+        List<Future<Run>> runs = pool.invokeAll(jobs);
+        comparison.nanos = System.nanoTime() - start;
+        try{
+            comparison.fifo = runs.get(0).get();
+            comparison.banker = runs.get(1).get();
+        }catch(ExecutionException e){
+            throw new IllegalStateException(e.getCause());
+        }
+        return comparison;
+    }
+
+
+    // one run (on the calling thread)
+    private static Run simulate(Program program, ArrayList<Integer> resource_amounts, boolean banker, boolean events, boolean sorted,
+                                boolean dump, Run run){
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        TableSimulator simulator = new TableSimulator(new TaskTable(program), resource_amounts, banker, events, new PrintStream(messages));
+        if(sorted){
+            simulator.setSortedSafety(true);
+        }
+        simulator.setDumpUnsafe(dump);
+        simulator.setCache(run.cache);
+        simulator.setMetrics(run.metrics);
+        simulator.setTrace(run.trace);
+        run.result = simulator.run();
+        run.nanos = System.nanoTime() - start;
+        run.messages = messages.toString();
+        return run;
+    }
+
+
+    // the per-task results of both runs side by side, with what changed between them, and the time each run took
+    public String render(){
+        String nl = System.lineSeparator();
+        StringBuilder sb = new StringBuilder();
+        sb.append(fifo.messages).append(banker.messages);
+
+        String format = "%-10s %8s %8s %5s   %8s %8s %5s   %s" + nl;
+        sb.append(String.format(format, "", fifo.result.name, "", "", banker.result.name, "", "", "").stripTrailing()).append(nl);
+        sb.append(String.format(format, "", "time", "wait", "%", "time", "wait", "%", "difference"));
+
+        // both results list the same tasks, in order of task ID
+        Result f = fifo.result;
+        Result b = banker.result;
+        for(int k=0; k<f.task_ids.length; k++){
+            String[] left = columns(f, k);
+            String[] right = columns(b, k);
+            sb.append(String.format(format, "Task " + f.task_ids[k], left[0], left[1], left[2], right[0], right[1], right[2], difference(f, b, k)));
+        }
+        sb.append(String.format(format, "total", f.timeSum(), f.waitSum(), Result.percent(f.waitSum(), f.timeSum()) + "%",
+                b.timeSum(), b.waitSum(), Result.percent(b.waitSum(), b.timeSum()) + "%",
+                signed(b.timeSum() - f.timeSum()) + " time, " + signed(b.waitSum() - f.waitSum()) + " wait"));
+
+        sb.append(nl);
+        sb.append(String.format("wall time: %s %.1f ms, %s %.1f ms, both %.1f ms in parallel%n",
+                f.name, fifo.nanos / 1e6, b.name, banker.nanos / 1e6, nanos / 1e6));
+        return sb.toString();
+    }
+
+
+    // total time, waiting time and percentage of a task (blank for an aborted task)
+    private static String[] columns(Result r, int k){
+        if(r.aborted[k]){
+            return new String[]{"aborted", "", ""};
+        }
+        return new String[]{String.valueOf(r.total_time[k]), String.valueOf(r.waiting_time[k]),
+                            Result.percent(r.waiting_time[k], r.total_time[k]) + "%"};
+    }
+
+
+    // how the banker's result for a task differs from the FIFO result
+    private static String difference(Result f, Result b, int k){
+        if(f.aborted[k] || b.aborted[k]){
+            if(f.aborted[k] && b.aborted[k]){
+                return "aborted by both";
+            }
+            return "aborted by " + (f.aborted[k] ? f.name : b.name) + " only";
+        }
+        if(f.total_time[k] == b.total_time[k] && f.waiting_time[k] == b.waiting_time[k]){
+            return "same";
+        }
+        return signed(b.total_time[k] - f.total_time[k]) + " time, " + signed(b.waiting_time[k] - f.waiting_time[k]) + " wait";
+    }
+
+
+    private static String signed(long n){
+        return n > 0 ? "+" + n : String.valueOf(n);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.yf833;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+
+
+// the JFR events emitted by a simulation with metrics attached (see Metrics); they are only created while a
+// recording has them enabled, e.g. java -XX:StartFlightRecording=filename=sim.jfr Main --metrics input.txt
+public class Events {
+
+    public static final EventType CYCLE = EventType.getEventType(Cycle.class);
+    public static final EventType SAFETY_CHECK = EventType.getEventType(SafetyCheck.class);
+    public static final EventType DEADLOCK = EventType.getEventType(Deadlock.class);
+    public static final EventType ABORT = EventType.getEventType(Abort.class);
+
+
+    @Name("com.yf833.Cycle")
+    @Label("Simulation Cycle")
+    @Category("Deadlock Simulation")
+    @Description("One cycle of the simulation main loop")
+    public static class Cycle extends Event {
+        @Label("Simulation") public String simulation;
+        @Label("Cycle") public int cycle;
+        @Label("Cycle Time") @Timespan(Timespan.NANOSECONDS) public long nanos;
+        @Label("Ready Tasks") public int ready;
+        @Label("Blocked Tasks") public int blocked;
+    }
+
+
+    @Name("com.yf833.SafetyCheck")
+    @Label("Safety Check")
+    @Category("Deadlock Simulation")
+    @Description("A banker's safety check of one request")
+    public static class SafetyCheck extends Event {
+        @Label("Simulation") public String simulation;
+        @Label("Task") public int task;
+        @Label("Resource") public int resource;
+        @Label("Amount") public int amount;
+        @Label("Safe") public boolean safe;
+        @Label("Check Time") @Timespan(Timespan.NANOSECONDS) public long nanos;
+    }
+
+
+    @Name("com.yf833.Deadlock")
+    @Label("Deadlock")
+    @Category("Deadlock Simulation")
+    @Description("Every remaining task is blocked")
+    public static class Deadlock extends Event {
+        @Label("Simulation") public String simulation;
+        @Label("Cycle") public int cycle;
+        @Label("Blocked Tasks") public int blocked;
+    }
+
+
+    @Name("com.yf833.Abort")
+    @Label("Task Aborted")
+    @Category("Deadlock Simulation")
+    public static class Abort extends Event {
+        @Label("Simulation") public String simulation;
+        @Label("Cycle") public int cycle;
+        @Label("Task") public int task;
+        @Label("Units Released") public int released;
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.yf833;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+
+
+// writes synthetic scenarios in the input file format; the output is streamed one task at a time, so only
+// O(resource types) state is kept no matter how many tasks or activities are written
+// the same seed and parameters always give the same file
+public class Generator {
+
+    public static final int DELAY_NONE = 0;         // every activity has delay 0
+    public static final int DELAY_UNIFORM = 1;      // delays uniform in [0, delay_param]
+    public static final int DELAY_GEOMETRIC = 2;    // geometric delays with mean delay_param
+
+    public long seed = 1;                   // random seed
+    public int num_tasks = 10;              // # of tasks
+    public int num_resources = 3;           // # of resource types
+    public int units = 10;                  // units present of each resource type
+    public int activities = 10;             // # of request/release activities per ordinary task
+    public int delay_kind = DELAY_NONE;     // delay distribution (one of the DELAY_ constants)
+    public int delay_param = 0;             // max delay (uniform) or mean delay (geometric)
+    public double tightness = 0.5;          // (0..1] largest claim as a fraction of the units present
+    public double deadlock_prob = 0.0;      // chance that the scenario is deadlock-prone (every task grabs its full claims,
+                                            // odd tasks in ascending and even tasks in descending order of resource type)
+    public double deadlock_task_prob = 0.0; // chance that one task grabs its full claims in a random fixed order
+    public double vector_prob = 0.0;        // chance that a task takes its full claims in one vector request instead
+
+    private Random random;
+
+
+    ///// MAIN /////
+    // usage: Generator [--seed S] [--tasks T] [--resources R] [--units U] [--activities A]
+    //                  [--delay none|uniform:MAX|geometric:MEAN] [--tightness F] [--deadlock P] [--deadlock-tasks P]
+    //                  [--vector P] [output file]
+    public static void main(String[] args) throws IOException {
+
+        Generator g = new Generator();
+        String output = null;
+
+        for(int i=0; i<args.length; i++){
+            if(args[i].equals("--seed")){
+                g.seed = Long.parseLong(args[++i]);
+            }else if(args[i].equals("--tasks")){
+                g.num_tasks = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--resources")){
+                g.num_resources = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--units")){
+                g.units = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--activities")){
+                g.activities = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--delay")){
+                g.setDelay(args[++i]);
+            }else if(args[i].equals("--tightness")){
+                g.tightness = Double.parseDouble(args[++i]);
+            }else if(args[i].equals("--deadlock")){
+                g.deadlock_prob = Double.parseDouble(args[++i]);
+            }else if(args[i].equals("--deadlock-tasks")){
+                g.deadlock_task_prob = Double.parseDouble(args[++i]);
+            }else if(args[i].equals("--vector")){
+                g.vector_prob = Double.parseDouble(args[++i]);
+            }else if(args[i].startsWith("--")){
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }else{
+                output = args[i];
+            }
+        }
+
+        Writer out = output == null ? new OutputStreamWriter(System.out) : new FileWriter(output);
+        try(BufferedWriter writer = new BufferedWriter(out, 1 << 16)){
+            g.write(writer);
+        }
+    }
+
+
+    // set the delay distribution from "none", "uniform:MAX" or "geometric:MEAN"
+    public void setDelay(String spec){
+        String[] parts = spec.split(":");
+        if(parts[0].equals("none")){
+            delay_kind = DELAY_NONE;
+            delay_param = 0;
+        }else if(parts[0].equals("uniform") && parts.length == 2){
+            delay_kind = DELAY_UNIFORM;
+            delay_param = Integer.parseInt(parts[1]);
+        }else if(parts[0].equals("geometric") && parts.length == 2){
+            delay_kind = DELAY_GEOMETRIC;
+            delay_param = Integer.parseInt(parts[1]);
+        }else{
+            throw new IllegalArgumentException("Unknown delay distribution " + spec);
+        }
+    }
+
+
+    // write the whole scenario (header line, then each task's activities in order)
+    public void write(Writer out) throws IOException {
+        if(num_tasks < 1 || num_resources < 1 || units < 1){
+            throw new IllegalArgumentException("tasks, resources and units must be positive");
+        }
+        random = new Random(seed);
+
+        // whether the scenario is deadlock-prone is drawn once, from its own generator (so the rest of the file is
+        // the same as without --deadlock whenever the draw says no); SplittableRandom mixes its seed, so nearby
+        // seeds give unrelated draws
+        boolean prone = new SplittableRandom(seed).nextDouble() < deadlock_prob;
+
+        StringBuilder line = new StringBuilder();
+        line.append(num_tasks).append(' ').append(num_resources);
+        for(int r=0; r<num_resources; r++){
+            line.append(' ').append(units);
+        }
+        out.write(line.append('\n').toString());
+
+        int max_claim = Math.max(1, Math.min(units, (int) Math.round(tightness * units)));
+        int[] claims = new int[num_resources];
+        int[] held = new int[num_resources];
+
+        for(int t=1; t<=num_tasks; t++){
+            for(int r=0; r<num_resources; r++){
+                claims[r] = 1 + random.nextInt(max_claim);
+                held[r] = 0;
+                activity(out, line, "initiate", t, r+1, claims[r]);
+            }
+
+            // vector task: take the full claim of every resource in one atomic request (one vrequest line with a
+            // resource type and amount for every resource)
+            if(vector_prob > 0 && random.nextDouble() < vector_prob){
+                line.setLength(0);
+                line.append("vrequest ").append(t).append(' ').append(delay());
+                for(int r=0; r<num_resources; r++){
+                    held[r] = claims[r];
+                    line.append(' ').append(r+1).append(' ').append(claims[r]);
+                }
+                out.write(line.append('\n').toString());
+            }
+            // deadlock-prone task: hold the full claim of every resource at once, taken in ascending or
+            // descending order (tasks that take opposite orders can wait on each other). in a deadlock-prone
+            // scenario every task does this, and neighbouring tasks always take opposite orders
+            else if(random.nextDouble() < deadlock_task_prob || prone){
+                boolean ascending = prone ? t % 2 == 1 : random.nextBoolean();
+                for(int k=0; k<num_resources; k++){
+                    int r = ascending ? k : num_resources-1-k;
+                    held[r] = claims[r];
+                    activity(out, line, "request", t, r+1, claims[r]);
+                }
+            }
+            // ordinary task: random requests (within the claims), each possibly followed by a release
+            else{
+                for(int k=0; k<activities/2; k++){
+                    int r = random.nextInt(num_resources);
+                    if(held[r] < claims[r]){
+                        int amount = 1 + random.nextInt(claims[r] - held[r]);
+                        held[r] += amount;
+                        activity(out, line, "request", t, r+1, amount);
+                    }
+                    if(held[r] > 0 && random.nextBoolean()){
+                        int amount = 1 + random.nextInt(held[r]);
+                        held[r] -= amount;
+                        activity(out, line, "release", t, r+1, amount);
+                    }
+                }
+            }
+
+            for(int r=0; r<num_resources; r++){
+                if(held[r] > 0){
+                    activity(out, line, "release", t, r+1, held[r]);
+                }
+            }
+            activity(out, line, "terminate", t, 0, 0);
+        }
+    }
+
+
+    // write one activity line (the delay is drawn from the delay distribution)
+    private void activity(Writer out, StringBuilder line, String type, int task, int resource, int amount) throws IOException {
+        line.setLength(0);
+        line.append(type).append(' ').append(task).append(' ').append(delay()).append(' ').append(resource).append(' ').append(amount).append('\n');
+        out.write(line.toString());
+    }
+
+
+    private int delay(){
+        if(delay_kind == DELAY_UNIFORM){
+            return random.nextInt(delay_param + 1);
+        }else if(delay_kind == DELAY_GEOMETRIC && delay_param > 0){
+            // inverse transform of a geometric distribution with success probability 1/(mean+1)
+            double p = 1.0 / (delay_param + 1);
+            return (int) Math.min(Integer.MAX_VALUE, Math.floor(Math.log(1.0 - random.nextDouble()) / Math.log(1.0 - p)));
+        }
+        return 0;
+    }
+
+}
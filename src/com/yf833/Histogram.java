@@ -0,0 +1,63 @@
+package com.yf833;
+
+
+
+// a histogram of non-negative longs with one bucket per power of two (bucket k holds values in [2^(k-1), 2^k)),
+// so recording a value is a couple of instructions and the memory used is fixed
+// percentiles are reported as the upper bound of the bucket they fall in
+public class Histogram {
+
+    public long count = 0;
+    public long sum = 0;
+    public long min = Long.MAX_VALUE;
+    public long max = 0;
+
+    private long[] buckets = new long[64];
+
+
+    // record one value (negative values count as 0)
+    public void record(long value){
+        if(value < 0){
+            value = 0;
+        }
+        buckets[64 - Long.numberOfLeadingZeros(value)]++;
+        count++;
+        sum += value;
+        if(value < min){
+            min = value;
+        }
+        if(value > max){
+            max = value;
+        }
+    }
+
+
+    public double mean(){
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+
+    // the smallest bucket bound that at least a fraction q of the values fall under (capped at max)
+    public long percentile(double q){
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+        for(int k=0; k<buckets.length; k++){
+            seen += buckets[k];
+            if(seen >= rank && seen > 0){
+                long bound = k == 0 ? 0 : (k == 63 ? Long.MAX_VALUE : (1L << k) - 1);
+                return Math.min(bound, max);
+            }
+        }
+        return max;
+    }
+
+
+    public String toString(){
+        if(count == 0){
+            return "count=0";
+        }
+        return "count=" + count + " mean=" + String.format("%.1f", mean()) + " min=" + min
+                + " p50=" + percentile(0.5) + " p99=" + percentile(0.99) + " max=" + max;
+    }
+
+}
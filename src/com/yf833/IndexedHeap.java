@@ -0,0 +1,118 @@
+package com.yf833;
+
+
+
+// a binary min-heap of task indices ordered by (key, task index), with the position of every task tracked so
+// that any task can be removed in O(log n)
+public class IndexedHeap {
+
+    private int[] heap;                 // task indices in heap order
+    private int size = 0;
+    private long[] key;                 // key of each queued task
+    private int[] position;             // where each task is in heap (-1 if it isn't queued)
+
+
+    // constructor //
+    public IndexedHeap(int num_tasks){
+        heap = new int[num_tasks];
+        key = new long[num_tasks];
+        position = new int[num_tasks];
+        for(int i=0; i<num_tasks; i++){
+            position[i] = -1;
+        }
+    }
+
+
+    public int size(){
+        return size;
+    }
+
+
+    public boolean contains(int task){
+        return position[task] >= 0;
+    }
+
+
+    // the key a queued task was pushed with
+    public long key(int task){
+        return key[task];
+    }
+
+
+    // add a task with the given key (a queued task is moved to its new key)
+    public void push(int task, long task_key){
+        if(contains(task)){
+            remove(task);
+        }
+        key[task] = task_key;
+        position[task] = size;
+        heap[size++] = task;
+        siftUp(position[task]);
+    }
+
+
+    // the task with the smallest key (ties go to the lowest index); -1 if the heap is empty
+    public int peek(){
+        return size == 0 ? -1 : heap[0];
+    }
+
+
+    // take a task out of the heap (does nothing if it isn't queued)
+    public void remove(int task){
+        int k = position[task];
+        if(k < 0){
+            return;
+        }
+        position[task] = -1;
+        int last = heap[--size];
+        if(k == size){
+            return;
+        }
+        heap[k] = last;
+        position[last] = k;
+        siftDown(k);
+        siftUp(position[last]);
+    }
+
+
+    private void siftUp(int k){
+        int task = heap[k];
+        while(k > 0){
+            int parent = (k-1) >>> 1;
+            if(!before(task, heap[parent])){
+                break;
+            }
+            heap[k] = heap[parent];
+            position[heap[k]] = k;
+            k = parent;
+        }
+        heap[k] = task;
+        position[task] = k;
+    }
+
+
+    private void siftDown(int k){
+        int task = heap[k];
+        int half = size >>> 1;
+        while(k < half){
+            int child = 2*k + 1;
+            if(child+1 < size && before(heap[child+1], heap[child])){
+                child++;
+            }
+            if(!before(heap[child], task)){
+                break;
+            }
+            heap[k] = heap[child];
+            position[heap[k]] = k;
+            k = child;
+        }
+        heap[k] = task;
+        position[task] = k;
+    }
+
+
+    private boolean before(int a, int b){
+        return key[a] < key[b] || (key[a] == key[b] && a < b);
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.yf833;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+
+// streaming parser for input files: the file is memory-mapped and its bytes are tokenized directly into
+// primitive activity records, grouped by task in a single pass (no Scanner, no Activity objects, no sort)
+public class InputParser {
+
+    private static final long CHUNK_SIZE = 1L << 30;    // bytes mapped at a time (a mapping can't exceed 2GB)
+    private static final int MAX_WORD = 16;             // longest activity type name that will be matched
+
+    private Scenario scenario;                          // filled in once the first line has been read
+    private int[] header = new int[16];                 // numbers on the first line: T, R, and the resource amounts
+    private int header_count = 0;
+
+    private int field = 0;                              // which field of the current activity comes next (0 = type)
+    private int[] record = new int[5];                  // type code, taskID, delay, resourceID, amount
+    private int vector_task = 0;                        // taskID of the vrequest being read (0 if the last activity wasn't one)
+    private int vector_resource = -1;                   // resourceID of a pair on a vrequest line that is still missing its amount
+
+    private long value = 0;                             // value of the number being read
+    private boolean negative = false;
+    private boolean in_number = false;
+    private byte[] word = new byte[MAX_WORD];           // bytes of the word being read
+    private int word_length = 0;
+    private int line = 1;                               // current line (for error messages)
+
+
+    // parse an input file into a Scenario
+    public static Scenario parse(File inputfile) throws IOException {
+        long start = System.nanoTime();
+
+        InputParser parser = new InputParser();
+        long size;
+        try(RandomAccessFile file = new RandomAccessFile(inputfile, "r"); FileChannel channel = file.getChannel()){
+            size = channel.size();
+            for(long position=0; position<size; position+=CHUNK_SIZE){
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+                parser.scan(buffer);
+            }
+        }
+        Scenario scenario = parser.finish();
+
+        scenario.bytes = size;
+        scenario.parse_nanos = System.nanoTime() - start;
+        return scenario;
+    }
+
+
+    // tokenize one mapped chunk (tokens may continue into the next chunk)
+    private void scan(MappedByteBuffer buffer){
+        int limit = buffer.limit();
+        for(int i=0; i<limit; i++){
+            byte b = buffer.get(i);
+
+            if(b >= '0' && b <= '9'){
+                if(word_length != 0){
+                    throw error("unexpected digit in word");
+                }
+                value = value * 10 + (b - '0');
+                in_number = true;
+            }
+            else if((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')){
+                if(in_number){
+                    throw error("unexpected letter in number");
+                }
+                if(negative){
+                    throw error("'-' before a word");
+                }
+                if(word_length < MAX_WORD){
+                    word[word_length] = b;
+                }
+                word_length++;
+            }
+            else if(b == '-'){
+                // a minus sign only starts a number: it can't follow a number, a word or another '-' directly
+                if(in_number || word_length != 0 || negative){
+                    throw error("unexpected '-'");
+                }
+                negative = true;
+            }
+            else{
+                endToken();
+                if(b == '\n'){
+                    line++;
+                }
+            }
+        }
+    }
+
+
+    // finish parsing after the last chunk
+    private Scenario finish(){
+        endToken();
+        if(scenario == null){
+            startActivities();
+        }
+        if(field != 0 || vector_resource >= 0){
+            throw error("incomplete activity at end of input");
+        }
+        return scenario;
+    }
+
+
+    // handle the token that was just read (if any)
+    private void endToken(){
+        if(in_number){
+            int n = (int) (negative ? -value : value);
+            value = 0;
+            negative = false;
+            in_number = false;
+            number(n);
+        }
+        else if(word_length != 0){
+            int type = typeCode();
+            word_length = 0;
+            word(type);
+        }
+        else if(negative){
+            throw error("'-' without a number");
+        }
+    }
+
+
+    // a number is either part of the first line, one of the 4 numbers of an activity, or a resourceID or amount of
+    // one of the extra pairs on a vrequest line (vrequest taskID delay resourceID amount [resourceID amount ...])
+    private void number(int n){
+        if(scenario == null){
+            if(header_count == header.length){
+                header = Arrays.copyOf(header, header.length * 2);
+            }
+            header[header_count++] = n;
+            return;
+        }
+        if(field == 0){
+            if(vector_task == 0){
+                throw error("expected an activity type");
+            }
+            if(vector_resource < 0){
+                vector_resource = n;
+            }else{
+                scenario.add(vector_task-1, Scenario.VECTOR_MORE, 0, vector_resource, n);
+                vector_resource = -1;
+            }
+            return;
+        }
+
+        record[field++] = n;
+        if(field == record.length){
+            int task_id = record[1];
+            if(task_id < 1 || task_id > scenario.num_tasks){
+                throw error("task " + task_id + " is outside of 1.." + scenario.num_tasks);
+            }
+            scenario.add(task_id-1, record[0], record[2], record[3], record[4]);
+            field = 0;
+            vector_task = record[0] == Activity.VREQUEST ? task_id : 0;
+        }
+    }
+
+
+    // a word starts a new activity (the first one also ends the first line)
+    private void word(int type){
+        if(scenario == null){
+            startActivities();
+        }
+        if(field != 0 || vector_resource >= 0){
+            throw error("expected a number");
+        }
+        vector_task = 0;
+        record[field++] = type;
+    }
+
+
+    // the first line is T, R, then the number of units of each resource type
+    private void startActivities(){
+        if(header_count < 2){
+            throw error("the first line must contain the number of tasks and resource types");
+        }
+        scenario = new Scenario(header[0], header[1], Arrays.copyOfRange(header, 2, header_count));
+    }
+
+
+    // match the current word against the activity type names
+    private int typeCode(){
+        for(int type=0; type<Activity.TYPE_NAMES.length; type++){
+            String name = Activity.TYPE_NAMES[type];
+            if(name.length() == word_length){
+                int k = 0;
+                while(k < word_length && word[k] == name.charAt(k)){
+                    k++;
+                }
+                if(k == word_length){
+                    return type;
+                }
+            }
+        }
+        throw error("unknown activity type");
+    }
+
+
+    private IllegalArgumentException error(String message){
+        return new IllegalArgumentException("Input error on line " + line + ": " + message);
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.yf833;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+
+
+// a tasks x resources matrix of ints stored off the Java heap, resource-major: each resource type's column is one
+// contiguous buffer of # of tasks ints (so a sweep over one resource reads consecutive memory, and no buffer comes
+// near the 2GB limit of a single buffer). the heap only holds one small buffer object per column, however many
+// tasks there are
+// columns are direct buffers, or regions of a memory-mapped file (see map and mapScratch), in native byte order
+public final class IntMatrix {
+
+    public final int rows;              // # of tasks
+    public final int columns;           // # of resource types
+
+    private final IntBuffer[] column;   // the values of each column (row i at index i)
+
+
+    private IntMatrix(int rows, int columns){
+        if(rows < 0 || columns < 0){
+            throw new IllegalArgumentException("matrix size must not be negative");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.column = new IntBuffer[columns];
+    }
+
+
+    // a zeroed matrix in direct (off-heap) memory
+    public static IntMatrix allocate(int rows, int columns){
+        IntMatrix m = new IntMatrix(rows, columns);
+        for(int j=0; j<columns; j++){
+            m.column[j] = direct(rows);
+        }
+        return m;
+    }
+
+
+    // a matrix backed by an existing file that holds one column after another, as left behind by a run with
+    // --map-matrices: the file is mapped as it is (writes to the matrix go to the file), once its size is checked
+    public static IntMatrix map(File file, int rows, int columns) throws IOException {
+        IntMatrix m = new IntMatrix(rows, columns);
+        long column_bytes = 4L * rows;
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            if(raf.length() != column_bytes * columns){
+                throw new IOException(file + " holds " + raf.length() + " bytes, not the " + column_bytes * columns
+                                      + " of a " + rows + "x" + columns + " matrix");
+            }
+            FileChannel channel = raf.getChannel();
+            for(int j=0; j<columns; j++){
+                m.column[j] = channel.map(FileChannel.MapMode.READ_WRITE, column_bytes * j, column_bytes)
+                                     .order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        }
+        return m;
+    }
+
+
+    // a zeroed matrix backed by a scratch file: the operating system pages the columns in and out, so the matrix can
+    // be larger than the memory available. the file is only backing storage for this run, not a saved matrix: it is
+    // created, or truncated and zeroed, with room for every column, and whatever it held before is lost (a run is
+    // saved and restored with Checkpointer snapshots instead)
+    public static IntMatrix mapScratch(File file, int rows, int columns) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            raf.setLength(0);                           // drop the old contents, so every column reads as zeros
+            raf.setLength(4L * rows * columns);
+        }
+        return map(file, rows, columns);
+    }
+
+
+    // a zeroed direct buffer of n ints
+    public static IntBuffer direct(int n){
+        return ByteBuffer.allocateDirect(4 * n).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+
+    public int get(int row, int col){
+        return column[col].get(row);
+    }
+
+
+    public void set(int row, int col, int value){
+        column[col].put(row, value);
+    }
+
+
+    public void add(int row, int col, int delta){
+        IntBuffer c = column[col];
+        c.put(row, c.get(row) + delta);
+    }
+
+
+    // the column of a resource type (shared, not copied: writes show up in the matrix)
+    public IntBuffer column(int col){
+        return column[col];
+    }
+
+
+    // a task's row, copied into the given array
+    public int[] row(int row, int[] into){
+        for(int j=0; j<columns; j++){
+            into[j] = column[j].get(row);
+        }
+        return into;
+    }
+
+
+    // copy of the whole matrix as heap arrays (one row per task; for diagnostic output)
+    public int[][] toArray(){
+        int[][] copy = new int[rows][columns];
+        for(int i=0; i<rows; i++){
+            row(i, copy[i]);
+        }
+        return copy;
+    }
+
+
+    // write every column in order (bytes are big-endian, as ByteBuffer writes them by default)
+    public void write(ByteBuffer out){
+        for(int j=0; j<columns; j++){
+            IntBuffer c = column[j].duplicate();
+            c.clear();
+            out.asIntBuffer().put(c);
+            out.position(out.position() + 4*rows);
+        }
+    }
+
+
+    // overwrite every column with what write() wrote
+    public void read(ByteBuffer in){
+        for(int j=0; j<columns; j++){
+            IntBuffer c = column[j].duplicate();
+            c.clear();
+            c.put(in.asIntBuffer().limit(rows));
+            in.position(in.position() + 4*rows);
+        }
+    }
+
+}
@@ -1,23 +1,24 @@
 package com.yf833;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 
 
 
 public class Main {
 
-    private static final int TASK_LIMIT = 10;           // arbitrary limit on number of tasks
-    private static final int RESOURCE_LIMIT = 10;       // arbitrary limit on number of resource types
-
     private static int num_tasks;                                                   // number of tasks in the input
     private static int num_resource_types;                                          // number of resource types in the input
     private static ArrayList<Integer> resource_amounts = new ArrayList<>();         // resource amounts array to hold input
 
     private static LinkedBlockingQueue<Task> tasks = new LinkedBlockingQueue<>();   // queue of tasks to hold input
+    private static Scenario scenario;                                               // the parsed input (primitive activity records)
 
 
     ///// MAIN /////
@@ -26,35 +27,195 @@ public class Main {
 
         // (1) get input from file; initialize variables  //
 
-        if(args.length == 1){
-            File inputfile = new File(args[0]);
-            getInputFromFile(inputfile);
-        }else{
-            throw new IllegalArgumentException("Incorrect number of arguments; must provide filename of input");
+        boolean large = false;          // --large: run the large-scale (table based) simulators
+        boolean events = false;         // --events: large-scale mode that skips cycles in which nothing happens
+        boolean stats = false;          // --stats: report parsing throughput (and large-scale allocation per cycle) on stderr
+        boolean wait_for = false;       // --waitfor: report partial deadlocks found by the FIFO wait-for graph on stderr
+        String victim = "lowest";       // --victim NAME: which blocked task the FIFO manager aborts to break a deadlock
+        MetricsRegistry metrics = null; // --metrics: report per-run metrics on stderr (and emit JFR events while recording)
+        String trace = null;            // --trace PREFIX: write binary traces to PREFIX.fifo.trace and PREFIX.banker.trace
+        String format = "text";         // --format text|csv|json: layout of the report written to stdout
+        boolean dump = false;           // --dump: print the leftover claims of every unsafe state the banker finds
+        int cache = 0;                  // --cache N: reuse up to N banker safety verdicts while the state is unchanged
+        String checkpoint = null;       // --checkpoint PREFIX: snapshot the large-scale runs to PREFIX.fifo.snap and PREFIX.banker.snap
+        int every = 1000000;            // --every N: cycles between snapshots
+        String resume = null;           // --resume PREFIX: continue the large-scale runs from the snapshots under PREFIX
+        int quantum = 0;                // --rr Q: schedule the large-scale runs round-robin with a quantum of Q cycles
+        int cpus = 1;                   // --cpus N: tasks that can run in the same cycle under round-robin
+        boolean sorted = false;         // --sorted-safety: the banker keeps tasks sorted by remaining need for its safety check
+        boolean compare = false;        // --compare: run FIFO and banker at the same time and print their results side by side
+        String map = null;              // --map-matrices PREFIX: back the large-scale claim matrices with scratch files PREFIX.<run>.claims/.allocation
+
+        for(int i=0; i<args.length-1; i++){
+            if(args[i].equals("--large")){
+                large = true;
+            }else if(args[i].equals("--events")){
+                large = true;
+                events = true;
+            }else if(args[i].equals("--stats")){
+                stats = true;
+            }else if(args[i].equals("--waitfor")){
+                wait_for = true;
+            }else if(args[i].equals("--victim")){
+                victim = args[++i];
+            }else if(args[i].equals("--metrics")){
+                metrics = new MetricsRegistry();
+            }else if(args[i].equals("--trace")){
+                trace = args[++i];
+            }else if(args[i].equals("--format")){
+                format = args[++i];
+                if(!Arrays.asList(Report.FORMATS).contains(format)){
+                    throw new IllegalArgumentException("Unknown format " + format + "; expected one of " + Arrays.toString(Report.FORMATS));
+                }
+            }else if(args[i].equals("--dump")){
+                dump = true;
+            }else if(args[i].equals("--cache")){
+                cache = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--checkpoint")){
+                checkpoint = args[++i];
+            }else if(args[i].equals("--every")){
+                every = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--resume")){
+                resume = args[++i];
+            }else if(args[i].equals("--rr")){
+                quantum = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--cpus")){
+                cpus = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--sorted-safety")){
+                sorted = true;
+            }else if(args[i].equals("--compare")){
+                compare = true;
+            }else if(args[i].equals("--map-matrices")){
+                map = args[++i];
+            }else{
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if(args.length == 0 || args[args.length-1].startsWith("--")){
+            throw new IllegalArgumentException("Incorrect number of arguments; usage: Main [--large | --events] [--stats] [--waitfor] [--victim NAME] [--metrics] [--trace PREFIX] [--format text|csv|json] [--dump] [--cache N] [--checkpoint PREFIX [--every N]] [--resume PREFIX] [--rr Q [--cpus N]] [--sorted-safety] [--map-matrices PREFIX] [--compare] <input file>");
+        }
+        if((checkpoint != null || resume != null) && !large){
+            throw new IllegalArgumentException("--checkpoint and --resume need --large or --events");
+        }
+        if(map != null && !large){
+            throw new IllegalArgumentException("--map-matrices needs --large or --events");
+        }
+        if(compare && (checkpoint != null || resume != null || map != null || quantum > 0)){
+            throw new IllegalArgumentException("--compare can't be combined with --checkpoint, --resume, --map-matrices or --rr");
+        }
+        if(compare && !format.equals("text")){
+            throw new IllegalArgumentException("--compare prints its own side-by-side table (--format only applies to the other modes)");
         }
+        if(wait_for && (large || compare)){
+            throw new IllegalArgumentException("--waitfor needs the object-based simulation (not --large, --events or --compare)");
+        }
+        if(!victim.equals("lowest") && (large || compare)){
+            throw new IllegalArgumentException("--victim needs the object-based simulation (the large-scale simulators always abort the lowest numbered task)");
+        }
+        if(quantum > 0 && (!large || events)){
+            throw new IllegalArgumentException("--rr needs --large");
+        }
+
+        File inputfile = new File(args[args.length-1]);
+        getInputFromFile(inputfile);
 
-        // (2) check if T or R exceed the arbitrary limits set; print an error message and exit if so
-        if(num_tasks>TASK_LIMIT){
-            throw new Exception("The number of tasks exceeds the maximum amount of " + TASK_LIMIT);
+        if(stats){
+            System.err.printf("parsed %d bytes in %.1f ms (%.1f MB/s)%n", scenario.bytes, scenario.parse_nanos / 1e6, scenario.throughput());
         }
-        if(num_resource_types>RESOURCE_LIMIT){
-            throw new Exception("The number of resource types exceeds the maximum amount of " + RESOURCE_LIMIT);
+
+
+        // (2a) comparison mode: both simulations run at once on their own threads, reading the same compiled program //
+        if(compare){
+            ForkJoinPool pool = new ForkJoinPool(2);
+            Comparison comparison = Comparison.run(Program.compile(scenario), resource_amounts, events, sorted, dump, cache, metrics, trace, pool);
+            pool.shutdown();
+            System.out.print(comparison.render());
+            System.out.flush();
+            for(Comparison.Run run : new Comparison.Run[]{comparison.fifo, comparison.banker}){
+                if(run.trace != null){
+                    closeTrace(run.trace);
+                }
+            }
+            if(comparison.banker.cache != null){
+                System.err.println("banker safety cache: " + comparison.banker.cache);
+            }
+            if(metrics != null){
+                metrics.print(System.err);
+            }
+            return;
+        }
+
+
+        // the results (and anything the banker prints) are collected here and written out once at the end
+        Report report = new Report();
+
+
+        // (2b) large-scale mode: run both simulations over primitive task tables (the compiled program is shared, not copied) //
+        if(large){
+            Program program = Program.compile(scenario);
+
+            runTable(program, false, events, stats, metrics, trace, dump, 0, checkpoint, every, resume, quantum, cpus, false, map, report);
+            runTable(program, true, events, stats, metrics, trace, dump, cache, checkpoint, every, resume, quantum, cpus, sorted, map, report);
+
+            report.write(System.out, format);
+            if(metrics != null){
+                metrics.print(System.err);
+            }
+            return;
         }
 
 
-        // (3) create copies of tasks and resources //
+        // (3) create tasks and copies of tasks and resources //
+        tasks = scenario.toTasks();
         LinkedBlockingQueue<Task> tasks2 = Util.copyTaskQueue(tasks);
         ArrayList<Integer> resource_amounts2 = new ArrayList<>(resource_amounts);
 
 
 
         // (4) run optimistic (FIFO) simulation //
-        Optimistic.runFifo(tasks, resource_amounts);
-
-        System.out.println("\n--------------------\n");
+        Optimistic fifo = new Optimistic(tasks, resource_amounts);
+        fifo.track_wait_for = wait_for;
+        fifo.victims = VictimPolicies.create(victim, tasks.size(), resource_amounts.size());
+        if(metrics != null){
+            fifo.metrics = metrics.create("fifo", resource_amounts.size());
+        }
+        if(trace != null){
+            fifo.trace = new TraceRecorder(new File(trace + ".fifo.trace"), num_tasks, num_resource_types);
+        }
+        report.add(fifo.run(), "");
+        if(trace != null){
+            closeTrace(fifo.trace);
+        }
+        if(wait_for){
+            printWaitFor(fifo.wait_for);
+        }
 
         // (5) run banker simulation //
-        Banker.runBanker(tasks2, resource_amounts2);
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        Banker banker = new Banker(tasks2, resource_amounts2, new PrintStream(messages));
+        banker.dump_unsafe = dump;
+        banker.sorted_safety = sorted;
+        if(cache > 0){
+            banker.cache = new SafetyCache(cache);
+        }
+        if(metrics != null){
+            banker.metrics = metrics.create("banker", resource_amounts.size());
+        }
+        if(trace != null){
+            banker.trace = new TraceRecorder(new File(trace + ".banker.trace"), num_tasks, num_resource_types);
+        }
+        report.add(banker.run(), messages.toString());
+        if(trace != null){
+            closeTrace(banker.trace);
+        }
+        if(banker.cache != null){
+            System.err.println("banker safety cache: " + banker.cache);
+        }
+
+        report.write(System.out, format);
+        if(metrics != null){
+            metrics.print(System.err);
+        }
 
 
     }
@@ -69,53 +230,114 @@ public class Main {
     }
 
 
-    // scan the input file and store all values into the appropriate variables / data structures
-    private static void getInputFromFile(File inputfile) throws FileNotFoundException {
-        Scanner input = new Scanner(inputfile);
-
-        // initialize first line of input //
-        num_tasks = input.nextInt();
-        num_resource_types = input.nextInt();
-        while(input.hasNextInt()){
-            resource_amounts.add(input.nextInt());
-        }
-
-        // store activities into an arraylist and sort //
-        ArrayList<Activity> activities = new ArrayList<>();
-        while(input.hasNext()){
-            Activity a = new Activity(input.next(), input.nextInt(), input.nextInt(), input.nextInt(), input.nextInt());
-            activities.add(a);
-        }
-        activities = Util.sortActivitiesByID(activities);
+    // parse the input file and store all values into the appropriate variables / data structures
+    private static void getInputFromFile(File inputfile) throws IOException {
+        scenario = InputParser.parse(inputfile);
 
+        num_tasks = scenario.num_tasks;
+        num_resource_types = scenario.num_resources;
+        resource_amounts = scenario.resourceAmounts();
+    }
 
-        // add activities to tasks //
-        Task t = new Task(activities.get(0).taskID, num_resource_types);
-        int current = t.taskID;
-        int i=0;
-        for(Activity a : activities){
 
-            if(a.taskID != current){
-                tasks.add(t);                                   // add previous task
-                current = a.taskID;                             // increment current task
-                t = new Task(a.taskID, num_resource_types);     // create a new task
-                t.activities.add(a);
-            }else{
-                t.activities.add(a);
+    // report the partial deadlocks found by the wait-for graph and the detection time of every cycle that ran it
+    private static void printWaitFor(WaitForGraph graph){
+        for(int k=0; k<graph.deadlocks.size(); k++){
+            System.err.println("cycle " + graph.deadlock_cycles.get(k) + ": deadlock among tasks " + Arrays.toString(graph.deadlocks.get(k)));
+        }
+        long total = 0;
+        for(int c=0; c<graph.cycle_nanos.size(); c++){
+            long nanos = graph.cycle_nanos.get(c);
+            if(nanos > 0){
+                System.err.printf("cycle %d: detection took %.1f us%n", c, nanos / 1e3);
             }
+            total += nanos;
+        }
+        System.err.printf("wait-for graph: %d checks in %d cycles, %.1f us in total%n", graph.checks, graph.cycle_nanos.size(), total / 1e3);
+    }
 
-            //add the last task in the list
-            if(current == num_tasks && i==activities.size()-1){
-                tasks.add(t);
-            }
 
-            i++;
+    // finish writing a trace; warn if the writer fell so far behind that records were dropped
+    private static void closeTrace(TraceRecorder recorder) throws IOException {
+        recorder.close();
+        if(recorder.dropped != 0){
+            System.err.println("trace: " + recorder.dropped + " of " + (recorder.records + recorder.dropped) + " records dropped in "
+                    + recorder.gaps + " gap(s), marked in the trace (writer fell behind)");
         }
-
     }
 
 
+    // run one large-scale simulation and add its result to the report; with --stats, report how much was allocated
+    // by the main loop. with --resume, the run continues from its snapshot (if there is one). with --rr, the run is
+    // scheduled round-robin and its throughput and turnaround are reported on stderr. with --map-matrices, the claim
+    // and allocation matrices live in memory-mapped scratch files (overwritten by every run) instead of direct memory
+    private static void runTable(Program program, boolean banker, boolean events, boolean stats, MetricsRegistry metrics, String trace,
+                                 boolean dump, int cache, String checkpoint, int every, String resume, int quantum, int cpus,
+                                 boolean sorted, String map, Report report) throws IOException {
+        String name = banker ? "banker" : "fifo";
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        TaskTable table;
+        IntMatrix claims;
+        if(map != null){
+            table = new TaskTable(program, IntMatrix.mapScratch(new File(map + "." + name + ".claims"), num_tasks, num_resource_types));
+            claims = IntMatrix.mapScratch(new File(map + "." + name + ".allocation"), num_tasks, num_resource_types);
+        }else{
+            table = new TaskTable(program);
+            claims = IntMatrix.allocate(num_tasks, num_resource_types);
+        }
+        TableSimulator simulator = new TableSimulator(table, resource_amounts, banker, events, new PrintStream(messages), claims);
+        if(quantum > 0){
+            simulator.setRoundRobin(quantum, cpus);
+        }
+        if(sorted){
+            simulator.setSortedSafety(true);
+        }
+        if(resume != null && new File(resume + "." + name + ".snap").exists()){
+            Checkpointer.resume(new File(resume + "." + name + ".snap"), simulator, messages);
+        }
+        Checkpointer checkpoints = null;
+        if(checkpoint != null){
+            checkpoints = new Checkpointer(new File(checkpoint + "." + name + ".snap"), every, messages);
+            simulator.setCheckpoints(checkpoints);
+        }
+        simulator.setDumpUnsafe(dump);
+        SafetyCache verdicts = cache > 0 ? new SafetyCache(cache) : null;
+        simulator.setCache(verdicts);
+        if(metrics != null){
+            simulator.setMetrics(metrics.create(name, resource_amounts.size()));
+        }
+        TraceRecorder recorder = null;
+        if(trace != null){
+            recorder = new TraceRecorder(new File(trace + "." + name + ".trace"), num_tasks, num_resource_types);
+            simulator.setTrace(recorder);
+        }
 
+        long allocated = Util.allocatedBytes();
+        simulator.simulate();
+        allocated = Util.allocatedBytes() - allocated;
+
+        Result result = simulator.result();
+        report.add(result, messages.toString());
+        if(recorder != null){
+            closeTrace(recorder);
+        }
+
+        if(verdicts != null){
+            System.err.println("banker safety cache: " + verdicts);
+        }
+        if(checkpoints != null && checkpoints.skipped != 0){
+            System.err.println(name + ": " + checkpoints.skipped + " of " + (checkpoints.taken + checkpoints.skipped) + " snapshots skipped (writer fell behind)");
+        }
+        if(quantum > 0){
+            System.err.printf("%s: round-robin (quantum %d, %d cpus): %d tasks in %d cycles (%.3f tasks/cycle), mean turnaround %.1f cycles, waiting %d%%%n",
+                    name, quantum, cpus, result.finished(), result.makespan(), result.throughput(), result.meanTurnaround(),
+                    Result.percent(result.waitSum(), result.timeSum()));
+        }
+        if(stats){
+            System.err.printf("%s: %d cycles, %d bytes allocated by the main loop (%.2f bytes/cycle)%n",
+                    name, simulator.cycles(), allocated, (double) allocated / Math.max(1, simulator.cycles()));
+        }
+    }
 
 
 }
@@ -0,0 +1,147 @@
+package com.yf833;
+
+import java.io.PrintStream;
+
+
+
+// metrics of one simulation run: time per cycle, safety check count and latency, ready/blocked queue depths,
+// grants and denials per resource, deadlocks and aborts; each hook also emits the matching JFR event (see Events)
+// while a recording has it enabled
+// a simulator only records metrics when one is attached (its metrics field is null otherwise), so the hooks cost
+// a null check when metrics are off
+public class Metrics {
+
+    public String name;                                 // the simulation these metrics belong to
+    public long cycles = 0;
+    public Histogram cycle_nanos = new Histogram();     // wall time of each cycle
+    public Histogram ready_depth = new Histogram();     // ready queue size at the end of each cycle
+    public Histogram blocked_depth = new Histogram();   // blocked queue size at the end of each cycle
+    public Histogram safety_nanos = new Histogram();    // wall time of each banker's safety check
+    public long unsafe = 0;                             // safety checks that failed
+    public long fast_path = 0;                          // safety checks passed without a sweep (see SafetyCheck.triviallySafe)
+    public long[] grants;                               // requests granted, per resource
+    public long[] denials;                              // requests checked and refused, per resource
+    public long deadlocks = 0;
+    public long aborts = 0;
+
+    private long cycle_start;
+
+
+    // constructor //
+    public Metrics(String name, int num_resources){
+        this.name = name;
+        this.grants = new long[num_resources];
+        this.denials = new long[num_resources];
+    }
+
+
+    public void startCycle(){
+        cycle_start = System.nanoTime();
+    }
+
+
+    public void endCycle(int cycle, int ready, int blocked){
+        long nanos = System.nanoTime() - cycle_start;
+        cycles++;
+        cycle_nanos.record(nanos);
+        ready_depth.record(ready);
+        blocked_depth.record(blocked);
+
+        if(Events.CYCLE.isEnabled()){
+            Events.Cycle e = new Events.Cycle();
+            e.simulation = name;
+            e.cycle = cycle;
+            e.nanos = nanos;
+            e.ready = ready;
+            e.blocked = blocked;
+            e.commit();
+        }
+    }
+
+
+    // a safety check of task i's request for amount units of resource r (all 0-based) took nanos
+    public void safetyCheck(int i, int r, int amount, boolean safe, long nanos){
+        safety_nanos.record(nanos);
+        if(!safe){
+            unsafe++;
+        }
+
+        if(Events.SAFETY_CHECK.isEnabled()){
+            Events.SafetyCheck e = new Events.SafetyCheck();
+            e.simulation = name;
+            e.task = i+1;
+            e.resource = r+1;
+            e.amount = amount;
+            e.safe = safe;
+            e.nanos = nanos;
+            e.commit();
+        }
+    }
+
+
+    // a safety check passed without a sweep: the grant left enough of every resource for any task's remaining need
+    public void fastPath(){
+        fast_path++;
+    }
+
+
+    // fraction of safety checks that took the fast path
+    public double fastPathRatio(){
+        return safety_nanos.count == 0 ? 0 : (double) fast_path / safety_nanos.count;
+    }
+
+
+    public void grant(int r){
+        grants[r]++;
+    }
+
+
+    public void deny(int r){
+        denials[r]++;
+    }
+
+
+    public void deadlock(int cycle, int blocked){
+        deadlocks++;
+
+        if(Events.DEADLOCK.isEnabled()){
+            Events.Deadlock e = new Events.Deadlock();
+            e.simulation = name;
+            e.cycle = cycle;
+            e.blocked = blocked;
+            e.commit();
+        }
+    }
+
+
+    // task i (0-based) was aborted, releasing the given number of units in total
+    public void abort(int cycle, int i, int released){
+        aborts++;
+
+        if(Events.ABORT.isEnabled()){
+            Events.Abort e = new Events.Abort();
+            e.simulation = name;
+            e.cycle = cycle;
+            e.task = i+1;
+            e.released = released;
+            e.commit();
+        }
+    }
+
+
+    public void print(PrintStream out){
+        out.println(name + " metrics:");
+        out.println("\tcycles: " + cycles + "  deadlocks: " + deadlocks + "  aborts: " + aborts);
+        out.println("\tcycle time (ns): " + cycle_nanos);
+        out.println("\tready depth: " + ready_depth);
+        out.println("\tblocked depth: " + blocked_depth);
+        if(safety_nanos.count != 0){
+            out.println("\tsafety checks (ns): " + safety_nanos + "  unsafe=" + unsafe);
+            out.printf("\tfast path: %d of %d safety checks (%.1f%%)%n", fast_path, safety_nanos.count, 100 * fastPathRatio());
+        }
+        for(int r=0; r<grants.length; r++){
+            out.println("\tresource " + (r+1) + ": " + grants[r] + " granted, " + denials[r] + " denied");
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.yf833;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+
+
+// the metrics of every simulation run in this process that had metrics attached, in the order they were created
+// (safe to share between the threads of a batch run)
+public class MetricsRegistry {
+
+    private ArrayList<Metrics> runs = new ArrayList<>();
+
+
+    // create the metrics for a new run and register them
+    public synchronized Metrics create(String name, int num_resources){
+        Metrics metrics = new Metrics(name, num_resources);
+        runs.add(metrics);
+        return metrics;
+    }
+
+
+    public synchronized List<Metrics> all(){
+        return new ArrayList<>(runs);
+    }
+
+
+    public synchronized void print(PrintStream out){
+        for(Metrics metrics : runs){
+            metrics.print(out);
+        }
+    }
+
+}
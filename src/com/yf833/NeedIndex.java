@@ -0,0 +1,250 @@
+package com.yf833;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+
+// the tasks ordered by their remaining need (claim - allocation) of one resource type, kept sorted as needs change
+// the order is a treap: a binary search tree on (need, task index) whose shape is fixed by a pseudo-random priority
+// per task, so it stays O(log n) deep whatever order the updates come in, and moving a task is a removal and an
+// insertion along one path. every node also keeps the units held by its whole subtree, so the units held by all tasks
+// with need <= w are summed along a single path too. the safety sweep for the resource then runs in rounds: every
+// task whose need fits in what is available can finish and return its units, which lets the tasks that fit in the
+// larger amount finish next, until everything held is returned or a round frees nothing new
+// the columns are off-heap buffers (see IntMatrix), so a million tasks don't add millions of ints to the heap
+public class NeedIndex {
+
+    public static final int RETIRED = Integer.MAX_VALUE;   // the need of a task that has left the system (it never finishes)
+
+    private static final int NONE = -1;                    // no node
+
+    private IntBuffer need;             // each task's remaining need
+    private IntBuffer held;             // units each task holds
+    private IntBuffer priority;         // each task's treap priority (a parent's is never lower than its children's)
+    private IntBuffer left;             // each task's children in the tree (NONE if it has none)
+    private IntBuffer right;
+    private LongBuffer subtree_held;    // units held by each task's subtree (the task included)
+    private int root = NONE;            // the tree holds every task still in the system
+    private long total = 0;             // units held by all tasks (retired ones included)
+    private int retired = 0;            // # of retired tasks (kept out of the tree)
+    private long retired_held = 0;      // units held by retired tasks
+    private int split_low;              // scratch space: the two halves split() leaves
+    private int split_high;
+
+
+    // constructor: every task starts with no need and no units //
+    public NeedIndex(int num_tasks){
+        need = IntMatrix.direct(num_tasks);
+        held = IntMatrix.direct(num_tasks);
+        priority = IntMatrix.direct(num_tasks);
+        left = IntMatrix.direct(num_tasks);
+        right = IntMatrix.direct(num_tasks);
+        subtree_held = ByteBuffer.allocateDirect(8 * num_tasks).order(ByteOrder.nativeOrder()).asLongBuffer();
+        for(int i=0; i<num_tasks; i++){
+            priority.put(i, scramble(i));
+            root = insert(root, i);
+        }
+    }
+
+
+    // set a task's need and the units it holds, and move it to its place in the order
+    public void update(int task, int new_need, int new_held){
+        int old_need = need.get(task);
+        int old_held = held.get(task);
+        total += new_held - old_held;
+
+        // only the units held changed: adjust the sums on the path down to the task
+        if(new_need == old_need && old_need != RETIRED){
+            int t = root;
+            while(t != task){
+                subtree_held.put(t, subtree_held.get(t) + new_held - old_held);
+                t = before(task, t) ? left.get(t) : right.get(t);
+            }
+            held.put(task, new_held);
+            subtree_held.put(task, subtree_held.get(task) + new_held - old_held);
+            return;
+        }
+
+        if(old_need == RETIRED){
+            retired--;
+            retired_held -= old_held;
+        }else{
+            root = remove(root, task);
+        }
+        need.put(task, new_need);
+        held.put(task, new_held);
+        if(new_need == RETIRED){
+            retired++;
+            retired_held += new_held;
+        }else{
+            root = insert(root, task);
+        }
+    }
+
+
+    public int need(int task){
+        return need.get(task);
+    }
+
+
+    public int held(int task){
+        return held.get(task);
+    }
+
+
+    // true if every task holding units can finish, starting with work units available; task (-1 for none) is
+    // tentatively granted amount more units (work must already be reduced by amount)
+    public boolean sweep(long work, int task, int amount){
+
+        // units held by a retired task are never returned
+        if(retired_held != 0){
+            return false;
+        }
+
+        // every round, the tasks whose need fits in work finish and return what they hold (the granted task at its
+        // new need, with its new units), which raises work for the next round
+        long goal = total + amount;
+        long freed = -1;
+        long available = work;
+        while(true){
+            long returned = heldWithin(available);
+            if(task >= 0){
+                if(need.get(task) <= available){
+                    returned -= held.get(task);
+                }
+                if((long) need.get(task) - amount <= available){
+                    returned += held.get(task) + amount;
+                }
+            }
+            if(returned == goal){
+                return true;
+            }
+            if(returned == freed){
+                return false;
+            }
+            freed = returned;
+            available = work + freed;
+        }
+    }
+
+
+    // units held by the tasks in the system whose need is at most w
+    private long heldWithin(long w){
+        long sum = 0;
+        int t = root;
+        while(t != NONE){
+            if(need.get(t) <= w){
+                sum += held.get(t) + sumOf(left.get(t));
+                t = right.get(t);
+            }else{
+                t = left.get(t);
+            }
+        }
+        return sum;
+    }
+
+
+    ///// TREAP /////
+
+    // add task a (not in the tree) to the subtree rooted at t; returns the new root of the subtree
+    private int insert(int t, int a){
+        if(t == NONE || priority.get(a) > priority.get(t)){
+            split(t, a);
+            left.put(a, split_low);
+            right.put(a, split_high);
+            pull(a);
+            return a;
+        }
+        if(before(a, t)){
+            left.put(t, insert(left.get(t), a));
+        }else{
+            right.put(t, insert(right.get(t), a));
+        }
+        pull(t);
+        return t;
+    }
+
+
+    // take task a out of the subtree rooted at t; returns the new root of the subtree
+    private int remove(int t, int a){
+        if(t == a){
+            return merge(left.get(a), right.get(a));
+        }
+        if(before(a, t)){
+            left.put(t, remove(left.get(t), a));
+        }else{
+            right.put(t, remove(right.get(t), a));
+        }
+        pull(t);
+        return t;
+    }
+
+
+    // split the subtree rooted at t into the tasks ordered before a (split_low) and the rest (split_high)
+    private void split(int t, int a){
+        if(t == NONE){
+            split_low = NONE;
+            split_high = NONE;
+        }else if(before(t, a)){
+            split(right.get(t), a);
+            right.put(t, split_low);
+            pull(t);
+            split_low = t;
+        }else{
+            split(left.get(t), a);
+            left.put(t, split_high);
+            pull(t);
+            split_high = t;
+        }
+    }
+
+
+    // join two subtrees, every task of a ordered before every task of b
+    private int merge(int a, int b){
+        if(a == NONE){
+            return b;
+        }
+        if(b == NONE){
+            return a;
+        }
+        if(priority.get(a) > priority.get(b)){
+            right.put(a, merge(right.get(a), b));
+            pull(a);
+            return a;
+        }
+        left.put(b, merge(a, left.get(b)));
+        pull(b);
+        return b;
+    }
+
+
+    // recompute a node's subtree sum from its children
+    private void pull(int t){
+        subtree_held.put(t, held.get(t) + sumOf(left.get(t)) + sumOf(right.get(t)));
+    }
+
+
+    private long sumOf(int t){
+        return t == NONE ? 0 : subtree_held.get(t);
+    }
+
+
+    // true if task a comes before task b (smaller need, or the same need and a smaller index)
+    private boolean before(int a, int b){
+        int na = need.get(a);
+        int nb = need.get(b);
+        return na < nb || (na == nb && a < b);
+    }
+
+
+    // a task's priority: its index scrambled by splitmix64's finalizer (the same tasks always give the same tree)
+    private static int scramble(int i){
+        long x = (i + 1) * 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (x ^ (x >>> 31));
+    }
+
+}
@@ -6,50 +6,110 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 
 
+// each Optimistic instance holds the state of one simulation, so any number of them can run at the same time
 public class Optimistic {
 
 
-    public static int cycle = 0;                                                    // counter for current cycle #
-    public static boolean isDeadlocked = false;                                     // tracks whether the system is in a state of deadlock or not
-    public static int[][] resource_claims;                                          // a 2D array to lookup current resource claims for all tasks
-    public static ArrayList<Task> finished_tasks = new ArrayList<>();               // contains tasks that have terminated or aborted (used when printing output)
-    public static ArrayList<Integer> available;                                     // an arraylist of availble resource amounts for all resources
-    public static ArrayList<Integer> freed;                                         // an arraylist for keeping track of how many units of each resource have been freed in this cycle
-    public static LinkedBlockingQueue<Task> blocked = new LinkedBlockingQueue<>();  // a queue for blocked tasks
+    public int cycle = 0;                                                    // counter for current cycle #
+    public boolean isDeadlocked = false;                                     // tracks whether the system is in a state of deadlock or not
+    public int[][] resource_claims;                                          // a 2D array to lookup current resource claims for all tasks
+    public ArrayList<Task> finished_tasks = new ArrayList<>();               // contains tasks that have terminated or aborted (used when printing output)
+    public ArrayList<Integer> available;                                     // an arraylist of availble resource amounts for all resources
+    public ArrayList<Integer> freed;                                         // an arraylist for keeping track of how many units of each resource have been freed in this cycle
+    public TaskList blocked = new TaskList();                                // a queue for blocked tasks
+    public boolean track_wait_for = false;                                   // set before run() to find partial deadlocks with a wait-for graph
+    public WaitForGraph wait_for;                                            // the wait-for graph (only built if track_wait_for is set)
+    public VictimPolicy victims;                                             // picks the tasks aborted to break a deadlock (lowest numbered task if not set)
+    public Metrics metrics;                                                  // records per-cycle metrics if set before run() (null if metrics are off)
+    public TraceRecorder trace;                                              // records every state change if set before run() (null if tracing is off)
 
+    private TaskList tasks;                                                  // the ready queue
 
-    // run the fifo simulation for the given resources and tasks //
+
+    // constructor //
+    public Optimistic(LinkedBlockingQueue<Task> tasks, ArrayList<Integer> resource_amounts){
+        this.tasks = new TaskList(tasks);
+        this.available = resource_amounts;
+    }
+
+
+    // run the fifo simulation for the given resources and tasks and print the summary //
     public static void runFifo(LinkedBlockingQueue<Task> tasks, ArrayList<Integer> resource_amounts){
+        new Optimistic(tasks, resource_amounts).run().print(System.out);
+    }
+
+
+    // run the fifo simulation to completion //
+    public Result run(){
 
-        available = resource_amounts;
         freed = new ArrayList<>(Collections.nCopies(available.size(), 0));
 
         //initialize resource_claims[][] with 0s
-        resource_claims = new int[tasks.size()][resource_amounts.size()];
+        resource_claims = new int[tasks.size()][available.size()];
         for(Task t : tasks){
-            for(int j=0; j<resource_amounts.size(); j++){
+            for(int j=0; j<available.size(); j++){
                 resource_claims[t.taskID-1][j] = 0;
             }
         }
+        if(victims == null){
+            victims = new VictimPolicies.LowestId(tasks.size());
+        }
+        if(track_wait_for){
+            wait_for = new WaitForGraph(resource_claims, available.size());
+        }
 
 
         ///// Main Loop /////
         while(!tasks.isEmpty() || !blocked.isEmpty()){
 
+            if(metrics != null){
+                metrics.startCycle();
+            }
+
             //check if blocked tasks can be serviced
             for(Task t : blocked){
 
                 Activity current = t.activities.peek();
 
+                // a vector request is granted whole or not at all
+                if(current.op == Activity.VREQUEST){
+                    int short_resource = firstShort(current);
+                    if(short_resource < 0){
+                        grantVector(t, current);
+                        t.activities.poll();
+                        t.isBlocked = false;
+                        victims.unblocked(t);
+                    }else{
+                        t.waiting_time++;
+                        if(metrics != null){
+                            metrics.deny(short_resource);
+                        }
+                    }
+                    continue;
+                }
+
                 // try to claim the resource amount
                 if(current.amount <= available.get(current.resourceID-1)){
                     resource_claims[t.taskID-1][current.resourceID-1] += current.amount;
                     available.set(current.resourceID - 1, available.get(current.resourceID - 1) - current.amount);
                     t.activities.poll();
                     t.isBlocked = false;
+                    victims.unblocked(t);
+                    if(wait_for != null){
+                        wait_for.grant(t.taskID-1, current.resourceID-1);
+                    }
+                    if(metrics != null){
+                        metrics.grant(current.resourceID-1);
+                    }
+                    if(trace != null){
+                        trace.record(TraceRecorder.GRANT, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                    }
                 }else{
                     //increase waiting time if request is unable to be granted
                     t.waiting_time++;
+                    if(metrics != null){
+                        metrics.deny(current.resourceID-1);
+                    }
                 }
             }
 
@@ -61,38 +121,96 @@ public class Optimistic {
 
                 if(current.delay == 0){
 
-                    if(current.type.equals("initiate")){
+                    if(current.op == Activity.INITIATE){
                         t.activities.poll();
+                        if(t.start_cycle < 0){
+                            t.start_cycle = cycle;
+                        }
                     }
-                    else if(current.type.equals("request")){
+                    else if(current.op == Activity.REQUEST){
                         // try to claim the resource amount, otherwise, add to blocked and increase waiting time
                         if(current.amount <= available.get(current.resourceID-1) && !t.isBlocked){
                             resource_claims[t.taskID-1][current.resourceID-1] += current.amount;
                             available.set(current.resourceID - 1, available.get(current.resourceID - 1) - current.amount);
                             t.activities.poll();
+                            if(wait_for != null){
+                                wait_for.grant(t.taskID-1, current.resourceID-1);
+                            }
+                            if(metrics != null){
+                                metrics.grant(current.resourceID-1);
+                            }
+                            if(trace != null){
+                                trace.record(TraceRecorder.GRANT, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                            }
 
                         }else{
                             t.waiting_time++;
                             t.isBlocked = true;
+                            if(metrics != null){
+                                metrics.deny(current.resourceID-1);
+                            }
+                            if(trace != null){
+                                trace.record(TraceRecorder.BLOCK, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                            }
 
-                            blocked.add(t);
                             tasks.remove(t);
+                            blocked.add(t);
+                            victims.blocked(t, resource_claims[t.taskID-1], cycle);
+                            if(wait_for != null){
+                                wait_for.block(t.taskID-1, current.resourceID-1, current.amount, available, freed, cycle);
+                            }
                         }
 
                     }
-                    else if(current.type.equals("release")){
+                    else if(current.op == Activity.VREQUEST){
+                        // claim every resource of the vector at once, otherwise block on the first one that is short
+                        int short_resource = firstShort(current);
+                        if(short_resource < 0 && !t.isBlocked){
+                            grantVector(t, current);
+                            t.activities.poll();
+                        }else{
+                            t.waiting_time++;
+                            t.isBlocked = true;
+                            if(short_resource < 0){
+                                short_resource = current.resourceID-1;
+                            }
+                            if(metrics != null){
+                                metrics.deny(short_resource);
+                            }
+                            if(trace != null){
+                                trace.record(TraceRecorder.BLOCK, cycle, t.taskID-1, short_resource, current.amounts[short_resource]);
+                            }
+
+                            tasks.remove(t);
+                            blocked.add(t);
+                            victims.blocked(t, resource_claims[t.taskID-1], cycle);
+                            if(wait_for != null){
+                                wait_for.block(t.taskID-1, short_resource, current.amounts[short_resource], available, freed, cycle);
+                            }
+                        }
+                    }
+                    else if(current.op == Activity.RELEASE){
                         // release the task's claims into freed
                         resource_claims[t.taskID-1][current.resourceID-1] -= current.amount;
                         freed.set(current.resourceID-1, freed.get(current.resourceID-1) + current.amount);
                         t.activities.poll();
+                        if(wait_for != null){
+                            wait_for.release(t.taskID-1, current.resourceID-1);
+                        }
+                        if(trace != null){
+                            trace.record(TraceRecorder.RELEASE, cycle, t.taskID-1, current.resourceID-1, current.amount);
+                        }
 
                     }
 
-                    else if (current.type.equals("terminate")){
+                    else if (current.op == Activity.TERMINATE){
                         // terminate the task -- set the finish time, add it to finished, and remove it from the queue
                         t.total_time = cycle;
                         finished_tasks.add(t);
                         tasks.remove(t);
+                        if(trace != null){
+                            trace.record(TraceRecorder.TERMINATE, cycle, t.taskID-1, -1, 0);
+                        }
 
                         t.activities.poll();
                     }
@@ -110,8 +228,8 @@ public class Optimistic {
             // add all unblocked tasks back to ready queue //
             for(Task t : blocked){
                 if(t.isBlocked == false){
-                    tasks.add(t);
                     blocked.remove(t);
+                    tasks.add(t);
                 }
             }
 
@@ -123,6 +241,9 @@ public class Optimistic {
             // deadlock occurs when there items in blocked and nothing in the ready queue
             if(tasks.size() == 0 && blocked.size() != 0 && isDeadlocked == false){
                 isDeadlocked = true;
+                if(metrics != null){
+                    metrics.deadlock(cycle, blocked.size());
+                }
             }
             ///// break deadlock if already deadlocked /////
             if(isDeadlocked){
@@ -130,14 +251,18 @@ public class Optimistic {
                 // while the next blocked task's activity can't be run; keep aborting tasks
                 while(isAvailable() == false){
 
-                    //abort the lowest numbered task
-                    abortLowestTask();
+                    //abort the task chosen by the victim policy (the lowest numbered task by default)
+                    abortVictim();
                 }
 
                 //move next task to ready
                 Task next = blocked.poll();
                 next.isBlocked = false;
                 tasks.add(next);
+                victims.unblocked(next);
+                if(wait_for != null){
+                    wait_for.unblock(next.taskID-1);
+                }
 
                 isDeadlocked = false;
 
@@ -149,6 +274,12 @@ public class Optimistic {
                 available.set(i, available.get(i) + freed.get(i));
                 freed.set(i, 0);
             }
+            if(wait_for != null){
+                wait_for.endCycle();
+            }
+            if(metrics != null){
+                metrics.endCycle(cycle, tasks.size(), blocked.size());
+            }
 
 
             cycle++;
@@ -171,35 +302,18 @@ public class Optimistic {
         }
 
 
-        // print output //
-        System.out.println("\nFIFO");
-        Util.sortTasksByID(finished_tasks);
-
-        int time_sum = 0;
-        int wait_sum = 0;
-
-        for(Task t : finished_tasks){
-            if(t.isAborted){
-                System.out.println("Task " + t.taskID + "\taborted");
-            }else{
-                Util.printTaskSumamry(t);
-                time_sum += t.total_time;
-                wait_sum += t.waiting_time;
-            }
-        }
-        System.out.print("total" + "\t" + time_sum + "\t" + wait_sum + "\t");
-
-        int percent_total = Math.round(((float) wait_sum / (float) time_sum) * 100);
-        System.out.println(percent_total + "%");
-
+        return Result.fromTasks("FIFO", finished_tasks);
     }
 
 
 
 
     // check if the next task's activity in the blocked tasks can be granted
-    public static boolean isAvailable(){
+    public boolean isAvailable(){
             Task next = blocked.peek();
+            if(next.activities.peek().op == Activity.VREQUEST){
+                return firstShort(next.activities.peek()) < 0;
+            }
             if(next.activities.peek().amount <= available.get(next.activities.peek().resourceID-1)){
                 return true;
             }
@@ -207,31 +321,64 @@ public class Optimistic {
     }
 
 
-    // abort the lowest numbered task in the blocked queue
-    public static void abortLowestTask(){
-        int lowestTaskID = blocked.peek().taskID;
-        for(Task t : blocked){
-            if(t.taskID < lowestTaskID){
-                lowestTaskID = t.taskID;
+    // the first resource of which a vector request asks for more units than are available (-1 if it can be granted)
+    private int firstShort(Activity request){
+        for(int j=0; j<request.amounts.length; j++){
+            if(request.amounts[j] > available.get(j)){
+                return j;
             }
         }
+        return -1;
+    }
 
-        for(Task t : blocked){
-            if(t.taskID == lowestTaskID){
-                t.isAborted = true;
-                finished_tasks.add(t);
-                blocked.remove(t);
-
-                //release all of t's claims and add them back to available
-                for(int j=0; j<resource_claims[t.taskID-1].length; j++){
-                    int claim = resource_claims[t.taskID-1][j];
-                    resource_claims[t.taskID-1][j] = 0;
-                    available.set(j, available.get(j) + claim);
-                }
 
+    // grant every resource of a vector request
+    private void grantVector(Task t, Activity request){
+        for(int j=0; j<request.amounts.length; j++){
+            int amount = request.amounts[j];
+            if(amount == 0){
+                continue;
+            }
+            resource_claims[t.taskID-1][j] += amount;
+            available.set(j, available.get(j) - amount);
+            if(wait_for != null){
+                wait_for.grant(t.taskID-1, j);
+            }
+            if(metrics != null){
+                metrics.grant(j);
+            }
+            if(trace != null){
+                trace.record(TraceRecorder.GRANT, cycle, t.taskID-1, j, amount);
             }
         }
+    }
 
+
+    // abort the blocked task chosen by the victim policy and release all of its claims
+    public void abortVictim(){
+        Task t = victims.choose(blocked.peek());
+        t.isAborted = true;
+        finished_tasks.add(t);
+        blocked.remove(t);
+        victims.unblocked(t);
+
+        //release all of t's claims and add them back to available
+        int released = 0;
+        for(int j=0; j<resource_claims[t.taskID-1].length; j++){
+            int claim = resource_claims[t.taskID-1][j];
+            resource_claims[t.taskID-1][j] = 0;
+            available.set(j, available.get(j) + claim);
+            released += claim;
+        }
+        if(metrics != null){
+            metrics.abort(cycle, t.taskID-1, released);
+        }
+        if(trace != null){
+            trace.record(TraceRecorder.ABORT, cycle, t.taskID-1, -1, released);
+        }
+        if(wait_for != null){
+            wait_for.abort(t.taskID-1);
+        }
     }
 
 
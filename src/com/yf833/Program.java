@@ -0,0 +1,113 @@
+package com.yf833;
+
+import java.util.ArrayList;
+
+
+
+// the activities of every task compiled into packed int arrays (one slot per activity, all tasks back to back)
+// task i's program runs from start[i] to start[i+1]-1; a program counter into these arrays replaces the Activity queue
+// a Program is never modified once it is compiled, so any number of simulations can share it
+public class Program {
+
+    // opcodes (the same codes the input parser uses for activity types)
+    public static final int INITIATE = Activity.INITIATE;
+    public static final int REQUEST = Activity.REQUEST;
+    public static final int RELEASE = Activity.RELEASE;
+    public static final int TERMINATE = Activity.TERMINATE;
+    public static final int VREQUEST = Activity.VREQUEST;
+
+    public int num_tasks;               // number of tasks
+    public int num_resources;           // number of resource types
+    public int[] resource_amounts;      // units present for each resource type
+
+    public int[] start;                 // index of each task's first activity (start[num_tasks] is the total # of activities)
+    public int[] op;                    // opcode of each activity
+    public int[] delay;                 // delay of each activity
+    public int[] resource;              // resource index (resourceID-1) of each activity (for a vector request: its index in vectors)
+    public int[] amount;                // claim, request or release amount of each activity (unused by vector requests)
+    public int[][] vectors;             // the units asked for of every resource type by each vector request
+
+
+    // compile a parsed scenario //
+    public static Program compile(Scenario scenario){
+        Program p = new Program();
+        p.num_tasks = scenario.num_tasks;
+        p.num_resources = scenario.num_resources;
+        p.resource_amounts = scenario.resource_amounts.clone();
+
+        // the records of a vector request become a single activity
+        p.start = new int[scenario.num_tasks + 1];
+        for(int i=0; i<scenario.num_tasks; i++){
+            int count = 0;
+            int[] r = scenario.records[i];
+            for(int k=0; k<scenario.num_activities[i] * Scenario.RECORD_SIZE; k+=Scenario.RECORD_SIZE){
+                if(r[k] == VREQUEST){
+                    k = scenario.vectorEnd(i, k) - Scenario.RECORD_SIZE;
+                }
+                count++;
+            }
+            p.start[i+1] = p.start[i] + count;
+        }
+
+        int n = p.start[scenario.num_tasks];
+        p.op = new int[n];
+        p.delay = new int[n];
+        p.resource = new int[n];
+        p.amount = new int[n];
+        ArrayList<int[]> vectors = new ArrayList<>();
+
+        for(int i=0; i<scenario.num_tasks; i++){
+            int[] r = scenario.records[i];
+            int pc = p.start[i];
+            for(int k=0; k<scenario.num_activities[i] * Scenario.RECORD_SIZE; k+=Scenario.RECORD_SIZE){
+                p.op[pc] = r[k];
+                p.delay[pc] = r[k+1];
+                if(r[k] == VREQUEST){
+                    int end = scenario.vectorEnd(i, k);
+                    p.resource[pc] = vectors.size();
+                    vectors.add(scenario.vectorAmounts(i, k, end));
+                    k = end - Scenario.RECORD_SIZE;
+                }else{
+                    p.resource[pc] = r[k+2] - 1;
+                    p.amount[pc] = r[k+3];
+                }
+                pc++;
+            }
+        }
+        p.vectors = vectors.toArray(new int[0][]);
+        return p;
+    }
+
+
+    // a hash of everything the program holds (a snapshot can only be resumed with the program it was taken from)
+    public long fingerprint(){
+        long h = 17;
+        h = 31*h + num_tasks;
+        h = 31*h + num_resources;
+        h = hash(h, resource_amounts);
+        h = hash(h, start);
+        h = hash(h, op);
+        h = hash(h, delay);
+        h = hash(h, resource);
+        h = hash(h, amount);
+        for(int[] v : vectors){
+            h = hash(h, v);
+        }
+        return h;
+    }
+
+
+    private static long hash(long h, int[] values){
+        for(int v : values){
+            h = 31*h + v;
+        }
+        return h;
+    }
+
+
+    // returns true if a task has at least one activity
+    public boolean hasActivities(int i){
+        return start[i+1] > start[i];
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.yf833;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+
+
+
+// the output of one or more simulation runs, kept in memory and written out in one go through a buffered writer
+// (nothing is printed while the simulations run)
+// formats: "text" is the original layout, "csv" has one row per task (plus a total row per run), "json" has one
+// object per run with its messages, tasks and totals
+public class Report {
+
+    public static final String[] FORMATS = {"text", "csv", "json"};
+
+    private static final String NL = System.lineSeparator();
+    private static final String SEPARATOR = "\n--------------------\n";    // printed between runs in the text layout
+
+
+    // one run: its result and whatever it printed while running (banker aborts, opt-in diagnostic dumps)
+    public static class Section {
+        public Result result;
+        public String messages;
+    }
+
+    private ArrayList<Section> sections = new ArrayList<>();
+
+
+    public void add(Result result, String messages){
+        Section section = new Section();
+        section.result = result;
+        section.messages = messages == null ? "" : messages;
+        sections.add(section);
+    }
+
+
+    // render the whole report in the given format
+    public String render(String format){
+        StringBuilder sb = new StringBuilder();
+        if(format.equals("text")){
+            appendText(sb);
+        }else if(format.equals("csv")){
+            appendCsv(sb);
+        }else if(format.equals("json")){
+            appendJson(sb);
+        }else{
+            throw new IllegalArgumentException("Unknown report format " + format);
+        }
+        return sb.toString();
+    }
+
+
+    // render the report and write it with a single buffered write (the stream is flushed, not closed)
+    public void write(OutputStream out, String format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out), 1 << 16);
+        writer.write(render(format));
+        writer.flush();
+    }
+
+
+    private void appendText(StringBuilder sb){
+        for(int k=0; k<sections.size(); k++){
+            if(k > 0){
+                sb.append(SEPARATOR).append(NL);
+            }
+            sb.append(sections.get(k).messages);
+            sections.get(k).result.appendText(sb);
+        }
+    }
+
+
+    private void appendCsv(StringBuilder sb){
+        sb.append("simulation,task,total_time,waiting_time,waiting_percent,aborted").append(NL);
+        for(Section section : sections){
+            Result r = section.result;
+            for(int k=0; k<r.task_ids.length; k++){
+                sb.append(r.name).append(',').append(r.task_ids[k]).append(',');
+                if(r.aborted[k]){
+                    sb.append(",,,true");
+                }else{
+                    sb.append(r.total_time[k]).append(',').append(r.waiting_time[k]).append(',')
+                      .append(Result.percent(r.waiting_time[k], r.total_time[k])).append(",false");
+                }
+                sb.append(NL);
+            }
+            sb.append(r.name).append(",total,").append(r.timeSum()).append(',').append(r.waitSum()).append(',')
+              .append(Result.percent(r.waitSum(), r.timeSum())).append(',').append(NL);
+        }
+    }
+
+
+    private void appendJson(StringBuilder sb){
+        sb.append("{\"runs\": [");
+        for(int s=0; s<sections.size(); s++){
+            Section section = sections.get(s);
+            Result r = section.result;
+            sb.append(s > 0 ? "," : "").append(NL).append("  {\"name\": ");
+            appendJsonString(sb, r.name);
+
+            sb.append(", \"messages\": [");
+            boolean first = true;
+            for(String line : section.messages.split("\r?\n")){
+                if(!line.isEmpty()){
+                    sb.append(first ? "" : ", ");
+                    appendJsonString(sb, line);
+                    first = false;
+                }
+            }
+
+            sb.append("],").append(NL).append("   \"tasks\": [");
+            for(int k=0; k<r.task_ids.length; k++){
+                sb.append(k > 0 ? "," : "").append(NL).append("    {\"task\": ").append(r.task_ids[k]);
+                if(r.aborted[k]){
+                    sb.append(", \"aborted\": true}");
+                }else{
+                    sb.append(", \"total_time\": ").append(r.total_time[k])
+                      .append(", \"waiting_time\": ").append(r.waiting_time[k])
+                      .append(", \"waiting_percent\": ").append(Result.percent(r.waiting_time[k], r.total_time[k]))
+                      .append(", \"aborted\": false}");
+                }
+            }
+            sb.append("],").append(NL);
+            sb.append("   \"total\": {\"total_time\": ").append(r.timeSum())
+              .append(", \"waiting_time\": ").append(r.waitSum())
+              .append(", \"waiting_percent\": ").append(Result.percent(r.waitSum(), r.timeSum())).append("}}");
+        }
+        sb.append(NL).append("]}").append(NL);
+    }
+
+
+    private static void appendJsonString(StringBuilder sb, String s){
+        sb.append('"');
+        for(int i=0; i<s.length(); i++){
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\'){
+                sb.append('\\').append(c);
+            }else if(c == '\t'){
+                sb.append("\\t");
+            }else if(c < 0x20){
+                sb.append(String.format("\\u%04x", (int) c));
+            }else{
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.yf833;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+
+
+// the outcome of one simulation run: per-task finish time, waiting time and aborted flag (in order of task ID)
+public class Result {
+
+    public String name;                 // heading printed above the summary ("FIFO" or "BANKER'S")
+    public int[] task_ids;              // the ID of each task
+    public int[] total_time;            // the cycle at which each task terminated
+    public int[] waiting_time;          // the # of cycles each task spent blocked
+    public boolean[] aborted;           // true if a task was aborted
+
+
+    // constructor //
+    public Result(String name, int num_tasks){
+        this.name = name;
+        this.task_ids = new int[num_tasks];
+        this.total_time = new int[num_tasks];
+        this.waiting_time = new int[num_tasks];
+        this.aborted = new boolean[num_tasks];
+    }
+
+
+    // build a result from the finished tasks of an object based simulation
+    public static Result fromTasks(String name, ArrayList<Task> finished_tasks){
+        Util.sortTasksByID(finished_tasks);
+
+        Result result = new Result(name, finished_tasks.size());
+        for(int k=0; k<finished_tasks.size(); k++){
+            Task t = finished_tasks.get(k);
+            result.task_ids[k] = t.taskID;
+            result.total_time[k] = t.total_time;
+            result.waiting_time[k] = t.waiting_time;
+            result.aborted[k] = t.isAborted;
+        }
+        return result;
+    }
+
+
+    // total time of all tasks that weren't aborted
+    public long timeSum(){
+        long sum = 0;
+        for(int k=0; k<task_ids.length; k++){
+            if(!aborted[k]){
+                sum += total_time[k];
+            }
+        }
+        return sum;
+    }
+
+
+    // total waiting time of all tasks that weren't aborted
+    public long waitSum(){
+        long sum = 0;
+        for(int k=0; k<task_ids.length; k++){
+            if(!aborted[k]){
+                sum += waiting_time[k];
+            }
+        }
+        return sum;
+    }
+
+
+    // # of tasks that weren't aborted
+    public int finished(){
+        int n = 0;
+        for(int k=0; k<task_ids.length; k++){
+            if(!aborted[k]){
+                n++;
+            }
+        }
+        return n;
+    }
+
+
+    // the cycle at which the last task that wasn't aborted terminated
+    public int makespan(){
+        int last = 0;
+        for(int k=0; k<task_ids.length; k++){
+            if(!aborted[k]){
+                last = Math.max(last, total_time[k]);
+            }
+        }
+        return last;
+    }
+
+
+    // tasks finished per cycle
+    public double throughput(){
+        return makespan() == 0 ? 0 : (double) finished() / makespan();
+    }
+
+
+    // mean total time (turnaround) of the tasks that weren't aborted
+    public double meanTurnaround(){
+        return finished() == 0 ? 0 : (double) timeSum() / finished();
+    }
+
+
+    // waiting time as a percentage of total time (rounded the same way as the task summaries)
+    public static int percent(long waiting_time, long total_time){
+        return Math.round(((float) waiting_time / (float) total_time) * 100);
+    }
+
+
+    // print the summary of all tasks
+    public void print(PrintStream out){
+        StringBuilder sb = new StringBuilder();
+        appendText(sb);
+        out.print(sb);
+    }
+
+
+    // append the summary of all tasks (the layout print() uses)
+    public void appendText(StringBuilder sb){
+        String nl = System.lineSeparator();
+        sb.append("\n").append(name).append(nl);
+
+        for(int k=0; k<task_ids.length; k++){
+            if(aborted[k]){
+                sb.append("Task ").append(task_ids[k]).append("\taborted").append(nl);
+            }else{
+                sb.append("Task ").append(task_ids[k]).append("\t").append(total_time[k]).append("\t").append(waiting_time[k])
+                  .append("\t").append(percent(waiting_time[k], total_time[k])).append("%\t").append(nl);
+            }
+        }
+        sb.append("total").append("\t").append(timeSum()).append("\t").append(waitSum()).append("\t");
+        sb.append(percent(waitSum(), timeSum())).append("%").append(nl);
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.yf833;
+
+
+
+// bounded LRU cache of the verdicts of a safety check's per-resource sweeps (SAFE or UNSAFE)
+// the sweep of one resource type only depends on that resource's column of the allocation and claim matrices, the
+// tasks that have retired, the units of it available and, for the resource a request asks for, the tentative grant.
+// so an entry is keyed by the column's two StateHash hashes, the resource, the units available and the grant (task
+// and amount, or -1 and 0 for the other resources). the sweeps of resources a request doesn't ask for don't depend
+// on who asks, so they are hit by every request until their column or their units change, and a column that comes
+// back to an earlier state hits again; entries of states that don't come back age out of the cache
+// all storage is preallocated (parallel key/value arrays, chained hash buckets and an intrusive LRU list), so a
+// lookup allocates nothing
+public class SafetyCache {
+
+    public static final int MISS = -1;      // returned by get() if there is no entry for a sweep
+    public static final int UNSAFE = 0;
+    public static final int SAFE = 1;
+
+    public long hits = 0;               // lookups answered from the cache
+    public long misses = 0;             // lookups that had to run the check
+    public long evictions = 0;          // entries dropped to make room for new ones
+
+    private int capacity;
+    private int size = 0;
+    private int mask;                   // buckets.length - 1
+
+    private int[] buckets;              // first slot of each hash bucket (-1 if empty)
+    private int[] chain;                // next slot in the same bucket (-1 at the end)
+    private long[] key_state;           // the key of each slot (the column's two hashes, then the sweep)
+    private long[] key_state2;
+    private int[] key_resource;
+    private int[] key_work;
+    private int[] key_task;
+    private int[] key_amount;
+    private int[] verdicts;             // the cached verdict of each slot
+    private int[] lru_prev;             // LRU list: most recently used at lru_head, least at lru_tail
+    private int[] lru_next;
+    private int lru_head = -1;
+    private int lru_tail = -1;
+
+
+    // constructor //
+    public SafetyCache(int capacity){
+        if(capacity < 1){
+            throw new IllegalArgumentException("cache capacity must be positive");
+        }
+        this.capacity = capacity;
+
+        int n = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        buckets = new int[n];
+        mask = n - 1;
+        for(int b=0; b<n; b++){
+            buckets[b] = -1;
+        }
+
+        chain = new int[capacity];
+        key_state = new long[capacity];
+        key_state2 = new long[capacity];
+        key_resource = new int[capacity];
+        key_work = new int[capacity];
+        key_task = new int[capacity];
+        key_amount = new int[capacity];
+        verdicts = new int[capacity];
+        lru_prev = new int[capacity];
+        lru_next = new int[capacity];
+    }
+
+
+    // the cached verdict of a resource's sweep with work units available, in the column with the given hashes,
+    // with amount units tentatively granted to task (-1 for none) (MISS if there is none)
+    public int get(long state, long state2, int resource, int work, int task, int amount){
+        for(int s = buckets[bucket(state, resource, work, task, amount)]; s >= 0; s = chain[s]){
+            if(key_state[s] == state && key_state2[s] == state2 && key_resource[s] == resource && key_work[s] == work
+                    && key_task[s] == task && key_amount[s] == amount){
+                hits++;
+                moveToFront(s);
+                return verdicts[s];
+            }
+        }
+        misses++;
+        return MISS;
+    }
+
+
+    // store the verdict of a sweep (evicting the least recently used entry if full)
+    public void put(long state, long state2, int resource, int work, int task, int amount, int verdict){
+        int s;
+        if(size < capacity){
+            s = size++;
+        }else{
+            s = lru_tail;
+            unlinkBucket(s);
+            unlinkLru(s);
+            evictions++;
+        }
+
+        key_state[s] = state;
+        key_state2[s] = state2;
+        key_resource[s] = resource;
+        key_work[s] = work;
+        key_task[s] = task;
+        key_amount[s] = amount;
+        verdicts[s] = verdict;
+
+        int b = bucket(state, resource, work, task, amount);
+        chain[s] = buckets[b];
+        buckets[b] = s;
+        linkFront(s);
+    }
+
+
+    // fraction of lookups answered from the cache
+    public double hitRate(){
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+
+    public String toString(){
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions",
+                hits, misses, 100 * hitRate(), evictions);
+    }
+
+
+    // hash of a key (64-bit mix of its fields, folded to a bucket index; the state is already a hash)
+    private int bucket(long state, int resource, int work, int task, int amount){
+        long h = state;
+        h ^= (((long) task << 32) | (resource & 0xffffffffL)) * 0xC2B2AE3D27D4EB4FL;
+        h ^= (((long) work << 32) | (amount & 0xffffffffL)) * 0x165667B19E3779F9L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+
+    // remove a slot from its hash bucket's chain
+    private void unlinkBucket(int s){
+        int b = bucket(key_state[s], key_resource[s], key_work[s], key_task[s], key_amount[s]);
+        if(buckets[b] == s){
+            buckets[b] = chain[s];
+            return;
+        }
+        for(int p = buckets[b]; p >= 0; p = chain[p]){
+            if(chain[p] == s){
+                chain[p] = chain[s];
+                return;
+            }
+        }
+    }
+
+
+    private void moveToFront(int s){
+        if(lru_head != s){
+            unlinkLru(s);
+            linkFront(s);
+        }
+    }
+
+
+    private void linkFront(int s){
+        lru_prev[s] = -1;
+        lru_next[s] = lru_head;
+        if(lru_head >= 0){
+            lru_prev[lru_head] = s;
+        }else{
+            lru_tail = s;
+        }
+        lru_head = s;
+    }
+
+
+    private void unlinkLru(int s){
+        if(lru_prev[s] >= 0){
+            lru_next[lru_prev[s]] = lru_next[s];
+        }else{
+            lru_head = lru_next[s];
+        }
+        if(lru_next[s] >= 0){
+            lru_prev[lru_next[s]] = lru_prev[s];
+        }else{
+            lru_tail = lru_prev[s];
+        }
+    }
+
+}
@@ -0,0 +1,455 @@
+package com.yf833;
+
+import java.io.PrintStream;
+import java.nio.IntBuffer;
+
+
+// banker's safety check over off-heap allocation and claim matrices (see IntMatrix)
+// a request is tested by granting it in place, sweeping each resource, and rolling the grant back (no copies are made)
+// a vector request (several resource types at once) is tested against whole need rows instead (see isSafeVector), kept
+// in heap arrays once the first one comes: reading a row across the matrix's column buffers is strided, and a loop over
+// buffer reads isn't compiled to SIMD instructions the way a loop over an array is
+public class SafetyCheck {
+
+    private static final int NEVER = Integer.MAX_VALUE;    // the outstanding need of a retired task still holding units (it never finishes)
+
+    protected IntMatrix allocation;     // current allocation for all tasks (shared with the simulation, never copied)
+    protected IntMatrix claims;         // initial claims for all tasks (shared with the simulation)
+    protected boolean[] active;         // true while a task is still in the system (ready or blocked)
+    private boolean[] removed;          // scratch space: tasks that were simulated to completion during a sweep
+    private int[] work;                 // scratch space: units available during a vector check
+    private int[][] need_rows;          // vector check: every task's claim - allocation (null until the first vector
+                                        // check, and after a reindex)
+    private int[][] held_rows;          // vector check: every task's allocation
+    private PrintStream out;            // where the diagnostic dump of unsafe states goes
+
+    public boolean dump_unsafe = false; // print the claims left over by every failed check (diagnostic, off by default)
+    public Metrics metrics;             // records the count and latency of every check (null if metrics are off)
+    public SafetyCache cache;           // remembers the verdicts of per-resource sweeps by column state (null if caching is off)
+    private StateHash state;            // hashes of the columns the cache is keyed on (null until the cache is first used)
+    private int[] max_need;             // per resource: at least the largest outstanding need of any task (see outstanding)
+    private int[] max_task;             // per resource: the task that last raised max_need
+    private boolean[] max_stale;        // per resource: max_task's need went down, so max_need may be too high
+
+
+    // constructor //
+    public SafetyCheck(IntMatrix allocation, IntMatrix claims, PrintStream out){
+        this.allocation = allocation;
+        this.claims = claims;
+        this.out = out;
+
+        this.active = new boolean[allocation.rows];
+        this.removed = new boolean[allocation.rows];
+        for(int i=0; i<active.length; i++){
+            active[i] = true;
+        }
+
+        // the matrices may not be empty yet: the bounds are found on first use
+        this.max_need = new int[allocation.columns];
+        this.max_task = new int[allocation.columns];
+        this.max_stale = new boolean[allocation.columns];
+        forgetBounds();
+    }
+
+
+    // take a terminated or aborted task out of future safety checks
+    public void retire(int task_index){
+        active[task_index] = false;
+        if(state != null){
+            state.retire(task_index);
+        }
+        for(int j=0; j<max_need.length; j++){
+            raise(task_index, j);
+        }
+    }
+
+
+    // a task's allocation or claim of a resource changed (the simulation calls this after every grant, release,
+    // claim, and for every resource an aborted task gives back)
+    public void changed(int task_index, int resource_index){
+        if(state != null){
+            state.changed(task_index, resource_index);
+        }
+        if(need_rows != null){
+            copyCell(task_index, resource_index);
+        }
+        raise(task_index, resource_index);
+    }
+
+
+    // the allocation and claims were replaced wholesale (as when a simulation is restored from a snapshot)
+    public void reindex(){
+        if(state != null){
+            state.rehash();
+        }
+        need_rows = null;
+        held_rows = null;
+        forgetBounds();
+    }
+
+
+    // simulate what would happen if the given request is granted; gives the same verdict as Banker.isSafe()
+    public boolean isSafe(int task_index, int resource_index, int amount, int[] available){
+        return firstUnsafeResource(task_index, resource_index, amount, available) < 0;
+    }
+
+
+    // like isSafe(), but returns the first resource whose check fails (-1 if the request is safe)
+    // the verdict for that resource can only change once more of it becomes available: granting, releasing or
+    // claiming units only ever makes a resource's check harder to pass until the freed units are added back
+    public int firstUnsafeResource(int task_index, int resource_index, int amount, int[] available){
+        if(metrics == null){
+            return check(task_index, resource_index, amount, available);
+        }
+        long start = System.nanoTime();
+        int failed = check(task_index, resource_index, amount, available);
+        metrics.safetyCheck(task_index, resource_index, amount, failed < 0, System.nanoTime() - start);
+        return failed;
+    }
+
+
+    private int check(int task_index, int resource_index, int amount, int[] available){
+
+        // if any of the task's max additional requests exceed the available units; return UNSAFE
+        for(int j=0; j<available.length; j++){
+            if(claims.get(task_index, j) - allocation.get(task_index, j) > available[j]){
+                return j;
+            }
+        }
+
+        // a grant that leaves enough of every resource for any task's remaining need is safe without a sweep
+        if(triviallySafe(task_index, resource_index, amount, available)){
+            if(metrics != null){
+                metrics.fastPath();
+            }
+            return -1;
+        }
+
+        return sweepAll(task_index, resource_index, amount, available);
+    }
+
+
+    // true if the grant leaves at least the largest outstanding need of every resource: every task could then finish
+    // right away (the requesting task's own need only shrinks, so the largest need before the grant is enough)
+    private boolean triviallySafe(int task_index, int resource_index, int amount, int[] available){
+        for(int j=0; j<available.length; j++){
+            int left = j == resource_index ? available[j] - amount : available[j];
+            if(left < max_need[j] && (!max_stale[j] || left < rescan(j))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // what a task still needs of a resource before it can finish: claim - allocation while it is active, nothing once
+    // it has retired, unless it retired holding units (those are never returned, so no grant is trivially safe)
+    private int outstanding(int i, int j){
+        if(active[i]){
+            return claims.get(i, j) - allocation.get(i, j);
+        }
+        return allocation.get(i, j) != 0 ? NEVER : 0;
+    }
+
+
+    // keep max_need[j] an upper bound after task i's outstanding need of resource j changed; the bound only goes
+    // stale (too high) when the task that set it needs less, and is then rescanned the next time it is in the way
+    private void raise(int i, int j){
+        int need = outstanding(i, j);
+        if(need > max_need[j]){
+            max_need[j] = need;
+            max_task[j] = i;
+        }else if(i == max_task[j] && need < max_need[j]){
+            max_stale[j] = true;
+        }
+    }
+
+
+    // make every bound as high as it gets, to be rescanned on first use
+    private void forgetBounds(){
+        for(int j=0; j<max_need.length; j++){
+            max_need[j] = NEVER;
+            max_stale[j] = true;
+        }
+    }
+
+
+    // find the largest outstanding need of resource j again
+    private int rescan(int j){
+        max_need[j] = 0;
+        max_task[j] = 0;
+        for(int i=0; i<allocation.rows; i++){
+            int need = outstanding(i, j);
+            if(need > max_need[j]){
+                max_need[j] = need;
+                max_task[j] = i;
+            }
+        }
+        max_stale[j] = false;
+        return max_need[j];
+    }
+
+
+    // sweep every resource with the request tentatively granted; returns the first resource whose sweep fails
+    // (-1 if the request is safe). only the requested resource's sweep sees the grant
+    private int sweepAll(int task_index, int resource_index, int amount, int[] available){
+        int failed = -1;
+        for(int j=0; j<available.length && failed < 0; j++){
+            boolean safe = j == resource_index ? sweepCached(j, available[j] - amount, task_index, amount)
+                                               : sweepCached(j, available[j], -1, 0);
+            if(!safe){
+                failed = j;
+            }
+        }
+
+        // print the claims that could not be granted (same diagnostic output as Banker.isSafe)
+        if(failed >= 0 && dump_unsafe){
+            allocation.add(task_index, resource_index, amount);
+            Util.print2DArray(remainingClaims(resource_index, amount, available), out);
+            allocation.add(task_index, resource_index, -amount);
+        }
+        return failed;
+    }
+
+
+    // the sweep of one resource, reused if the same sweep was run on the same column before (nothing is cached
+    // while unsafe states are dumped)
+    private boolean sweepCached(int j, int work, int task_index, int amount){
+        if(cache == null || dump_unsafe){
+            return sweepResource(j, work, task_index, amount);
+        }
+        if(state == null){
+            state = new StateHash(allocation, claims, active);
+        }
+        long key = state.key(0, j);
+        long key2 = state.key(1, j);
+        int verdict = cache.get(key, key2, j, work, task_index, amount);
+        if(verdict == SafetyCache.MISS){
+            verdict = sweepResource(j, work, task_index, amount) ? SafetyCache.SAFE : SafetyCache.UNSAFE;
+            cache.put(key, key2, j, work, task_index, amount, verdict);
+        }
+        return verdict == SafetyCache.SAFE;
+    }
+
+
+    // true if every task can finish with resource j, starting with work units available, and amount more units
+    // tentatively granted to task_index (-1 for none; work is already reduced by amount)
+    protected boolean sweepResource(int j, int work, int task_index, int amount){
+        if(task_index < 0){
+            return sweep(j, work);
+        }
+        allocation.add(task_index, j, amount);
+        boolean safe = sweep(j, work);
+        allocation.add(task_index, j, -amount);
+        return safe;
+    }
+
+
+    // simulate what would happen if a vector request (amounts of every resource type) is granted
+    // all of its units are granted at once, then any active task whose whole remaining claim fits in what is available
+    // is simulated to completion, until no more can finish. each comparison covers a whole row without branching
+    // (the sign bits of the differences are or-ed together)
+    public boolean isSafeVector(int task_index, int[] amounts, int[] available){
+        if(metrics == null){
+            return checkVector(task_index, amounts, available);
+        }
+        long start = System.nanoTime();
+        boolean safe = checkVector(task_index, amounts, available);
+        metrics.safetyCheck(task_index, firstRequested(amounts), 0, safe, System.nanoTime() - start);
+        return safe;
+    }
+
+
+    private boolean checkVector(int task_index, int[] amounts, int[] available){
+        if(need_rows == null){
+            copyRows();
+        }
+
+        // if any of the task's max additional requests exceed the available units; return UNSAFE (as in isSafe)
+        if(!fits(task_index, available)){
+            return false;
+        }
+
+        // tentatively grant the whole request (in the row copies only)
+        int m = available.length;
+        if(work == null){
+            work = new int[m];
+        }
+        int[] task_held = held_rows[task_index];
+        int[] task_need = need_rows[task_index];
+        for(int j=0; j<m; j++){
+            work[j] = available[j] - amounts[j];
+            task_held[j] += amounts[j];
+            task_need[j] -= amounts[j];
+        }
+
+        // keep finishing tasks whose remaining claims fit, returning their allocations to work
+        for(int i=0; i<removed.length; i++){
+            removed[i] = !active[i];
+        }
+        boolean progress = true;
+        while(progress){
+            progress = false;
+            for(int i=0; i<allocation.rows; i++){
+                if(!removed[i] && fits(i, work)){
+                    int[] row = held_rows[i];
+                    for(int j=0; j<m; j++){
+                        work[j] += row[j];
+                    }
+                    removed[i] = true;
+                    progress = true;
+                }
+            }
+        }
+
+        // tasks that couldn't finish must not be holding anything
+        boolean safe = true;
+        for(int i=0; i<allocation.rows && safe; i++){
+            if(!removed[i] && holdsAny(i)){
+                safe = false;
+            }
+        }
+
+        // print the allocations of the tasks that could not finish
+        if(!safe && dump_unsafe){
+            int[][] remaining = new int[allocation.rows][m];
+            for(int i=0; i<remaining.length; i++){
+                if(!removed[i]){
+                    System.arraycopy(held_rows[i], 0, remaining[i], 0, m);
+                }
+            }
+            Util.print2DArray(remaining, out);
+        }
+
+        // roll back the tentative grant
+        for(int j=0; j<m; j++){
+            task_held[j] -= amounts[j];
+            task_need[j] += amounts[j];
+        }
+        return safe;
+    }
+
+
+    // true if a task's claim - allocation <= work for every resource
+    private boolean fits(int i, int[] work){
+        int[] need = need_rows[i];
+        int sign = 0;
+        for(int j=0; j<work.length; j++){
+            sign |= work[j] - need[j];
+        }
+        return sign >= 0;
+    }
+
+
+    // true if amounts <= available for every resource
+    public static boolean covers(int[] available, int[] amounts){
+        int sign = 0;
+        for(int j=0; j<available.length; j++){
+            sign |= available[j] - amounts[j];
+        }
+        return sign >= 0;
+    }
+
+
+    // the first resource of which fewer units are available than a vector request asks for (-1 if there is none)
+    public static int firstShort(int[] amounts, int[] available){
+        for(int j=0; j<available.length; j++){
+            if(amounts[j] > available[j]){
+                return j;
+            }
+        }
+        return -1;
+    }
+
+
+    // the first resource a vector request asks for (0 if it asks for nothing)
+    public static int firstRequested(int[] amounts){
+        for(int j=0; j<amounts.length; j++){
+            if(amounts[j] != 0){
+                return j;
+            }
+        }
+        return 0;
+    }
+
+
+    private boolean holdsAny(int i){
+        int[] held = held_rows[i];
+        int any = 0;
+        for(int j=0; j<held.length; j++){
+            any |= held[j];
+        }
+        return any != 0;
+    }
+
+
+    // build the row copies the vector check reads (one array per task: a loop over an array indexed from 0 vectorizes
+    // better than one over a slice of a flat array)
+    private void copyRows(){
+        need_rows = new int[allocation.rows][allocation.columns];
+        held_rows = new int[allocation.rows][allocation.columns];
+        for(int i=0; i<allocation.rows; i++){
+            for(int j=0; j<allocation.columns; j++){
+                copyCell(i, j);
+            }
+        }
+    }
+
+
+    private void copyCell(int i, int j){
+        held_rows[i][j] = allocation.get(i, j);
+        need_rows[i][j] = claims.get(i, j) - held_rows[i][j];
+    }
+
+
+    // simulate every active task to completion for one resource; returns false if any claims are left over
+    private boolean sweep(int j, int work){
+
+        for(int i=0; i<removed.length; i++){
+            removed[i] = false;
+        }
+
+        // keep passing over the tasks until no more of them can be satisfied (both columns are contiguous)
+        IntBuffer held = allocation.column(j);
+        IntBuffer claim = claims.column(j);
+        boolean progress = true;
+        while(progress){
+            progress = false;
+            for(int i=0; i<removed.length; i++){
+                if(active[i] && !removed[i] && claim.get(i) - held.get(i) <= work){
+                    work += held.get(i);
+                    removed[i] = true;
+                    progress = true;
+                }
+            }
+        }
+
+        // tasks that couldn't finish (or that have already left the system) must not be holding anything
+        for(int i=0; i<removed.length; i++){
+            if(!removed[i] && held.get(i) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // build the claims matrix left over after simulating every resource (only used for diagnostic output)
+    private int[][] remainingClaims(int resource_index, int amount, int[] available){
+        int[][] remaining = allocation.toArray();
+        for(int j=0; j<available.length; j++){
+            int work = available[j];
+            if(j == resource_index){
+                work -= amount;
+            }
+            sweep(j, work);
+            for(int i=0; i<remaining.length; i++){
+                if(removed[i]){
+                    remaining[i][j] = 0;
+                }
+            }
+        }
+        return remaining;
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.yf833;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+
+
+// a parsed input file: the resource amounts and every task's activities as primitive records
+// each record is RECORD_SIZE ints: (type code, delay, resourceID, amount)
+// a vector request is a vrequest record for its first resource type, followed by a VECTOR_MORE record for each
+// other resource type on the same vrequest line (see vectorEnd)
+public class Scenario {
+
+    public static final int RECORD_SIZE = 4;
+    public static final int VECTOR_MORE = -1;   // type code of a record that adds a resource type to the vector request before it
+
+    public int num_tasks;               // number of tasks in the input
+    public int num_resources;           // number of resource types in the input
+    public int[] resource_amounts;      // units present for each resource type
+
+    public int[][] records;             // activity records for each task, in input order (task i has taskID i+1)
+    public int[] num_activities;        // number of activity records for each task
+
+    public long bytes;                  // size of the input in bytes
+    public long parse_nanos;            // time taken to parse the input
+
+
+    // constructor //
+    public Scenario(int num_tasks, int num_resources, int[] resource_amounts){
+        this.num_tasks = num_tasks;
+        this.num_resources = num_resources;
+        this.resource_amounts = resource_amounts;
+
+        this.records = new int[num_tasks][];
+        this.num_activities = new int[num_tasks];
+    }
+
+
+    // append an activity record to a task (the task's record array grows by doubling)
+    public void add(int task_index, int type, int delay, int resource_id, int amount){
+        int[] r = records[task_index];
+        int n = num_activities[task_index] * RECORD_SIZE;
+        if(r == null){
+            r = records[task_index] = new int[8 * RECORD_SIZE];
+        }else if(n == r.length){
+            r = records[task_index] = Arrays.copyOf(r, r.length * 2);
+        }
+        r[n] = type;
+        r[n+1] = delay;
+        r[n+2] = resource_id;
+        r[n+3] = amount;
+        num_activities[task_index]++;
+    }
+
+
+    // returns the resource amounts as an arraylist (the form used by the simulators)
+    public ArrayList<Integer> resourceAmounts(){
+        ArrayList<Integer> amounts = new ArrayList<>();
+        for(int a : resource_amounts){
+            amounts.add(a);
+        }
+        return amounts;
+    }
+
+
+    // create Task objects (in order of task ID) for the object based simulators; tasks with no activities are skipped
+    public LinkedBlockingQueue<Task> toTasks(){
+        LinkedBlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+        for(int i=0; i<num_tasks; i++){
+            if(num_activities[i] == 0){
+                continue;
+            }
+            Task t = new Task(i+1, num_resources);
+            int[] r = records[i];
+            for(int k=0; k<num_activities[i] * RECORD_SIZE; k+=RECORD_SIZE){
+                if(r[k] == Activity.VREQUEST){
+                    int end = vectorEnd(i, k);
+                    t.activities.add(new Activity(i+1, r[k+1], vectorAmounts(i, k, end)));
+                    k = end - RECORD_SIZE;
+                }else{
+                    t.activities.add(new Activity(Activity.TYPE_NAMES[r[k]], i+1, r[k+1], r[k+2], r[k+3]));
+                }
+            }
+            tasks.add(t);
+        }
+        return tasks;
+    }
+
+
+    // the end (exclusive record offset) of the vector request whose first record is at offset k of task i's records
+    // (the request takes in the VECTOR_MORE records that follow it; the next vrequest always starts a new request)
+    public int vectorEnd(int i, int k){
+        int[] r = records[i];
+        int end = num_activities[i] * RECORD_SIZE;
+        int next = k + RECORD_SIZE;
+        while(next < end && r[next] == VECTOR_MORE){
+            next += RECORD_SIZE;
+        }
+        return next;
+    }
+
+
+    // the units asked for of every resource type by the vector request in records [k, end) of task i
+    public int[] vectorAmounts(int i, int k, int end){
+        int[] amounts = new int[num_resources];
+        boolean[] named = new boolean[num_resources];
+        for(int p=k; p<end; p+=RECORD_SIZE){
+            int resource_id = records[i][p+2];
+            if(resource_id < 1 || resource_id > num_resources){
+                throw new IllegalArgumentException("Task " + (i+1) + ": vrequest for resource " + resource_id + " is outside of 1.." + num_resources);
+            }
+            if(named[resource_id-1]){
+                throw new IllegalArgumentException("Task " + (i+1) + ": vrequest names resource " + resource_id + " more than once");
+            }
+            named[resource_id-1] = true;
+            amounts[resource_id-1] = records[i][p+3];
+        }
+        return amounts;
+    }
+
+
+    // parsing throughput in MB/s
+    public double throughput(){
+        return (bytes / (1024.0 * 1024.0)) / (parse_nanos / 1e9);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.yf833;
+
+import java.io.PrintStream;
+
+
+
+// banker's safety check that keeps a NeedIndex per resource type, updated on every grant, release, claim and
+// retirement (in O(log n)), so the sweep for each resource is a few rounds of O(log n) sums that stop as soon as every
+// held unit has been returned (or a round returns nothing new), instead of passing over every task until nothing changes
+// it gives the same verdicts as SafetyCheck; the unsafe state dump and vector requests use SafetyCheck's code
+public class SortedSafetyCheck extends SafetyCheck {
+
+    private NeedIndex[] index;          // the tasks in order of remaining need, for each resource type
+
+
+    // constructor //
+    public SortedSafetyCheck(IntMatrix allocation, IntMatrix claims, PrintStream out){
+        super(allocation, claims, out);
+        index = new NeedIndex[allocation.columns];
+        reindex();
+    }
+
+
+    public void changed(int task_index, int resource_index){
+        super.changed(task_index, resource_index);
+        index[resource_index].update(task_index, needOf(task_index, resource_index), allocation.get(task_index, resource_index));
+    }
+
+
+    public void retire(int task_index){
+        super.retire(task_index);
+        for(int j=0; j<index.length; j++){
+            index[j].update(task_index, NeedIndex.RETIRED, allocation.get(task_index, j));
+        }
+    }
+
+
+    public void reindex(){
+        super.reindex();
+        for(int j=0; j<index.length; j++){
+            index[j] = new NeedIndex(allocation.rows);
+            for(int i=0; i<allocation.rows; i++){
+                index[j].update(i, needOf(i, j), allocation.get(i, j));
+            }
+        }
+    }
+
+
+    // the index's sweep (the requesting task is tentatively granted inside the sweep, not in place)
+    protected boolean sweepResource(int j, int work, int task_index, int amount){
+        return index[j].sweep(work, task_index, amount);
+    }
+
+
+    private int needOf(int i, int j){
+        return active[i] ? claims.get(i, j) - allocation.get(i, j) : NeedIndex.RETIRED;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.yf833;
+
+
+
+// Zobrist hashes of the columns of the state a safety sweep depends on: for each resource type, every task's
+// allocation and claim of it and whether the task has retired. each (task, resource, value) has its own
+// pseudo-random 64-bit code, and a column's hash is the xor of the codes of its non-zero cells, so a change to one
+// cell is two xors: its old code out, its new code in. a column that comes back to an earlier state (a task releases
+// what it was granted, say) hashes to the same value again, whatever happened in between, and a column that nothing
+// touched keeps its hash however much the other columns change
+// every hash is kept twice with independent codes, so two columns share a key only if both 64-bit hashes collide.
+// the old value of a cell comes from a copy of the hashed values (off-heap, like the matrices themselves)
+public class StateHash {
+
+    private static final long[] SALTS = {0x243F6A8885A308D3L, 0x13198A2E03707344L};     // one per hash
+
+    private static final int ALLOCATION = 0;    // kinds of code
+    private static final int CLAIM = 1;
+    private static final int RETIRED = 2;
+
+    private IntMatrix allocation;       // the matrices being hashed (shared with the safety check)
+    private IntMatrix claims;
+    private boolean[] active;
+    private IntMatrix hashed_allocation;    // the values the hashes were last updated with
+    private IntMatrix hashed_claims;
+    private boolean[] hashed_retired;
+    private long[][] hash;              // hash[k][j]: the k-th hash of column j
+
+
+    // constructor: hashes the current state //
+    public StateHash(IntMatrix allocation, IntMatrix claims, boolean[] active){
+        this.allocation = allocation;
+        this.claims = claims;
+        this.active = active;
+        hashed_allocation = IntMatrix.allocate(allocation.rows, allocation.columns);
+        hashed_claims = IntMatrix.allocate(claims.rows, claims.columns);
+        hashed_retired = new boolean[active.length];
+        hash = new long[SALTS.length][allocation.columns];
+        rehash();
+    }
+
+
+    // a task's allocation or claim of a resource changed
+    public void changed(int task_index, int resource_index){
+        update(ALLOCATION, allocation, hashed_allocation, task_index, resource_index);
+        update(CLAIM, claims, hashed_claims, task_index, resource_index);
+    }
+
+
+    // a task left the system (this shows in every column)
+    public void retire(int task_index){
+        if(!hashed_retired[task_index]){
+            hashed_retired[task_index] = true;
+            for(int j=0; j<allocation.columns; j++){
+                toggle(RETIRED, task_index, j, 1);
+            }
+        }
+    }
+
+
+    // hash the whole state again (after it was replaced wholesale, as when a simulation is restored from a snapshot)
+    public void rehash(){
+        for(long[] h : hash){
+            for(int j=0; j<h.length; j++){
+                h[j] = 0;
+            }
+        }
+        for(int j=0; j<allocation.columns; j++){
+            for(int i=0; i<allocation.rows; i++){
+                hashed_allocation.set(i, j, 0);
+                hashed_claims.set(i, j, 0);
+                update(ALLOCATION, allocation, hashed_allocation, i, j);
+                update(CLAIM, claims, hashed_claims, i, j);
+            }
+        }
+        for(int i=0; i<active.length; i++){
+            hashed_retired[i] = false;
+            if(!active[i]){
+                retire(i);
+            }
+        }
+    }
+
+
+    // the k-th hash (0 or 1) of resource j's column
+    public long key(int k, int j){
+        return hash[k][j];
+    }
+
+
+    private void update(int kind, IntMatrix values, IntMatrix hashed, int i, int j){
+        int old_value = hashed.get(i, j);
+        int new_value = values.get(i, j);
+        if(old_value != new_value){
+            toggle(kind, i, j, old_value);
+            toggle(kind, i, j, new_value);
+            hashed.set(i, j, new_value);
+        }
+    }
+
+
+    // xor a cell's code in or out of its column's hashes (a zero value has no code)
+    private void toggle(int kind, int i, int j, int value){
+        if(value != 0){
+            long cell = ((long) i * allocation.columns + j) << 2 | kind;
+            for(int k=0; k<hash.length; k++){
+                hash[k][j] ^= mix(mix(cell + SALTS[k]) + value);
+            }
+        }
+    }
+
+
+    // splitmix64's finalizer: a bijection that spreads every input bit over the whole output (so the codes are
+    // computed rather than looked up, and there is no table to size)
+    private static long mix(long x){
+        x *= 0x9E3779B97F4A7C15L;
+        x ^= x >>> 30;
+        x *= 0xBF58476D1CE4E5B9L;
+        x ^= x >>> 27;
+        x *= 0x94D049BB133111EBL;
+        x ^= x >>> 31;
+        return x;
+    }
+
+}
@@ -0,0 +1,1005 @@
+package com.yf833;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+
+
+// large-scale version of Optimistic.runFifo() and Banker.runBanker()
+// per-task state lives in a TaskTable and the ready queue is a plain int array of task indices,
+// so memory and the cost of each cycle grow linearly with the number of tasks
+//
+// blocked tasks wait in one queue per resource: the resource their request is waiting for (fifo), or the first
+// resource that failed the safety check (banker). a request that failed can only succeed once more of that resource
+// is available, so each cycle only the waiters on resources that were freed (or released by an abort) are checked
+// again, in the order they blocked; every other blocked task would fail its check, so it just keeps waiting and its
+// waiting time is settled when it leaves the queue
+//
+// a vector request waits on the first resource it is short of. it competes with the waiters on every resource it
+// asks for, so when the program has vector requests the fifo manager checks its woken waiters in blocked queue order
+// (as the banker does). a banker's vector request that has its units but fails the safety check waits in an extra
+// queue (index # of resources), which is checked again whenever anything was freed
+//
+// in event-driven mode the ready queue is a TimerQueue keyed by each task's wake-up cycle: only tasks whose delay
+// has run out are visited, and when a cycle changes nothing the clock jumps straight to the next wake-up
+//
+// with round-robin scheduling (setRoundRobin) only the first few ready tasks get a cpu in each cycle. a task's delay
+// is time spent computing, so it only counts down while the task has a cpu; a ready task without one waits (and that
+// counts as waiting time). a task keeps its cpu for at most a quantum of cycles, then goes to the back of the ready
+// queue (behind the tasks unblocked in the same cycle)
+public class TableSimulator {
+
+    private boolean banker;             // true for the banker's algorithm, false for the optimistic (fifo) manager
+    private boolean event_driven;       // true to skip cycles in which nothing can happen
+    private TaskTable table;            // per-task state columns
+    private Program program;            // the compiled activities shared by all tasks
+
+    private int cycle = 0;              // counter for current cycle #
+    private IntMatrix resource_claims;  // current resource claims for all tasks (off-heap)
+    private int[] units;                // units present of each resource
+    private int[] available;            // available resource amounts for all resources
+    private int[] freed;                // how many units of each resource have been freed in this cycle
+    private SafetyCheck safety;         // banker's safety check (unused by the optimistic manager)
+
+    private int[] ready;                // the ready queue (task indices in queue order)
+    private int ready_size = 0;
+    private int blocked_size = 0;       // # of blocked tasks
+    private int[] wait_head;            // first and last task waiting on each resource, plus the unsafe vector requests (-1 if none)
+    private int[] wait_tail;
+    private int[] wait_next;            // links between the tasks waiting on the same resource
+    private int[] wait_prev;
+    private int[] waiting_on;           // resource each blocked task is queued on (-1 if it isn't blocked)
+    private int[] block_cycle;          // cycle in which each blocked task blocked (or last failed a check)
+    private long[] block_seq;           // sequence # of each blocked task (its place in blocked queue order)
+    private IndexedHeap blocked_order;  // blocked tasks by sequence # (fifo only: the head of the blocked queue)
+    private IndexedHeap blocked_ids;    // blocked tasks by index (fifo only: the lowest numbered blocked task)
+    private IndexedHeap woken;          // waiters to check again this cycle, by sequence #
+    private int[] granted;              // waiters granted their request this cycle (in blocked queue order)
+    private int granted_size = 0;
+    private boolean[] is_dirty;         // true if more of a resource became available since its waiters were checked
+    private int[] dirty;                // the resources with is_dirty set
+    private int dirty_size = 0;
+
+    private TimerQueue timers;          // the ready queue in event-driven mode
+    private long next_seq = 0;          // sequence # given to the next task that enters the ready queue
+    private boolean changed;            // true if resources were freed or aborted during this cycle
+    private PrintStream out;            // where messages printed during the run go
+    private Metrics metrics;            // per-cycle metrics (null if metrics are off)
+    private TraceRecorder trace;        // binary trace of every state change (null if tracing is off)
+    private Checkpointer checkpoints;   // takes periodic snapshots of the state (null if checkpointing is off)
+
+    private int quantum = Integer.MAX_VALUE;    // round-robin: cycles a task keeps its cpu for
+    private int cpus = Integer.MAX_VALUE;       // round-robin: tasks that can run in the same cycle
+    private int[] slice_left;           // round-robin: cycles left of each task's quantum (null if round-robin is off)
+    private int[] preempted;            // round-robin: tasks that used up their quantum this cycle (in ready queue order)
+    private int preempted_size = 0;
+
+
+    // constructor //
+    public TableSimulator(TaskTable table, ArrayList<Integer> resource_amounts, boolean banker){
+        this(table, resource_amounts, banker, false, System.out);
+    }
+
+
+    // constructor //
+    public TableSimulator(TaskTable table, ArrayList<Integer> resource_amounts, boolean banker, boolean event_driven, PrintStream out){
+        this(table, resource_amounts, banker, event_driven, out, IntMatrix.allocate(table.num_tasks, resource_amounts.size()));
+    }
+
+
+    // constructor: the resource claims go in the given (zeroed) matrix, e.g. one mapped from a scratch file //
+    public TableSimulator(TaskTable table, ArrayList<Integer> resource_amounts, boolean banker, boolean event_driven, PrintStream out,
+                          IntMatrix resource_claims){
+        if(resource_claims.rows != table.num_tasks || resource_claims.columns != resource_amounts.size()){
+            throw new IllegalArgumentException("claims matrix is " + resource_claims.rows + "x" + resource_claims.columns
+                    + ", expected " + table.num_tasks + "x" + resource_amounts.size());
+        }
+        this.banker = banker;
+        this.event_driven = event_driven;
+        this.table = table;
+        this.program = table.program;
+        this.out = out;
+
+        units = new int[resource_amounts.size()];
+        available = new int[resource_amounts.size()];
+        freed = new int[resource_amounts.size()];
+        for(int i=0; i<available.length; i++){
+            units[i] = resource_amounts.get(i);
+            available[i] = units[i];
+        }
+
+        this.resource_claims = resource_claims;
+        safety = new SafetyCheck(resource_claims, table.initial_claims, out);
+
+        int n = table.num_tasks;
+        int num_resources = resource_amounts.size();
+        wait_head = new int[num_resources+1];
+        wait_tail = new int[num_resources+1];
+        for(int j=0; j<=num_resources; j++){
+            wait_head[j] = -1;
+            wait_tail[j] = -1;
+        }
+        wait_next = new int[n];
+        wait_prev = new int[n];
+        waiting_on = new int[n];
+        for(int i=0; i<n; i++){
+            waiting_on[i] = -1;
+        }
+        block_cycle = new int[n];
+        block_seq = new long[n];
+        woken = new IndexedHeap(n);
+        granted = new int[n];
+        is_dirty = new boolean[num_resources];
+        dirty = new int[num_resources];
+        if(!banker){
+            blocked_order = new IndexedHeap(n);
+            blocked_ids = new IndexedHeap(n);
+        }
+
+        // every task starts in the ready queue (in order of task ID)
+        ready = new int[table.num_tasks];
+        if(event_driven){
+            timers = new TimerQueue(table.num_tasks);
+        }
+        for(int i=0; i<table.num_tasks; i++){
+            if(program.hasActivities(i)){
+                makeReady(i);
+            }
+        }
+    }
+
+
+    // run the fifo simulation for the given resources and tasks //
+    public static void runFifo(TaskTable table, ArrayList<Integer> resource_amounts){
+        new TableSimulator(table, resource_amounts, false).run().print(System.out);
+    }
+
+
+    // run the banker simulation for the given resources and tasks //
+    public static void runBanker(TaskTable table, ArrayList<Integer> resource_amounts){
+        new TableSimulator(table, resource_amounts, true).run().print(System.out);
+    }
+
+
+    // run the simulation to completion and return its result
+    public Result run(){
+        simulate();
+        return result();
+    }
+
+
+    // record metrics for the rest of the run (null turns them off)
+    public void setMetrics(Metrics metrics){
+        this.metrics = metrics;
+        safety.metrics = metrics;
+    }
+
+
+    // reuse the safety verdicts of states that come back (null turns caching off)
+    public void setCache(SafetyCache cache){
+        safety.cache = cache;
+    }
+
+
+    // use the safety check that keeps the tasks sorted by remaining need (SortedSafetyCheck) or the plain one
+    // (only before the run starts)
+    public void setSortedSafety(boolean sorted){
+        SafetyCheck check = sorted ? new SortedSafetyCheck(resource_claims, table.initial_claims, out)
+                                   : new SafetyCheck(resource_claims, table.initial_claims, out);
+        check.metrics = safety.metrics;
+        check.cache = safety.cache;
+        check.dump_unsafe = safety.dump_unsafe;
+        safety = check;
+    }
+
+
+    // print the claims left over by every failed safety check (diagnostic, off by default)
+    public void setDumpUnsafe(boolean dump_unsafe){
+        safety.dump_unsafe = dump_unsafe;
+    }
+
+
+    // record every state change of the rest of the run (null turns tracing off)
+    public void setTrace(TraceRecorder trace){
+        this.trace = trace;
+    }
+
+
+    // take a snapshot every so many cycles, and one when the run ends (null turns checkpointing off)
+    public void setCheckpoints(Checkpointer checkpoints){
+        this.checkpoints = checkpoints;
+    }
+
+
+    // schedule the ready tasks round-robin: at most cpus of them run in each cycle, for at most quantum cycles in a row
+    // (only in the cycle-by-cycle mode, and before the run starts)
+    public void setRoundRobin(int quantum, int cpus){
+        if(quantum < 1 || cpus < 1){
+            throw new IllegalArgumentException("quantum and # of cpus must be positive");
+        }
+        if(event_driven){
+            throw new IllegalArgumentException("round-robin scheduling needs the cycle-by-cycle mode");
+        }
+        this.quantum = quantum;
+        this.cpus = cpus;
+        slice_left = new int[table.num_tasks];
+        for(int i=0; i<slice_left.length; i++){
+            slice_left[i] = quantum;
+        }
+        preempted = new int[table.num_tasks];
+    }
+
+
+    // the number of cycles simulated so far
+    public int cycles(){
+        return cycle;
+    }
+
+
+    // run the main loop until every task has terminated or aborted (no objects are allocated per cycle)
+    public void simulate(){
+
+        ///// Main Loop /////
+        while(readySize() != 0 || blocked_size != 0){
+
+            if(checkpoints != null && checkpoints.due(cycle)){
+                checkpoints.take(this, cycle);
+            }
+
+            changed = false;
+            if(metrics != null){
+                metrics.startCycle();
+            }
+
+            ///// (1) check if blocked tasks can be serviced (only the waiters on resources that were freed) /////
+            if(banker || program.vectors.length != 0){
+                wakeWaiters();
+                while(woken.size() != 0){
+                    int i = woken.peek();
+                    woken.remove(i);
+                    serviceBlocked(i);
+                }
+            }else{
+                serviceWaiters();
+            }
+
+            ///// (2) for each task in the ready queue, try to run the next activity (if possible) /////
+            if(event_driven){
+                runDueTasks();
+            }else if(slice_left != null){
+                runRoundRobin();
+            }else{
+                // tasks that stay ready are compacted towards the front of the queue
+                int kept = 0;
+                for(int k=0; k<ready_size; k++){
+                    int i = ready[k];
+                    if(step(i)){
+                        ready[kept++] = i;
+                    }
+                }
+                ready_size = kept;
+            }
+
+            ///// (3) add all unblocked tasks back to ready queue /////
+            for(int k=0; k<granted_size; k++){
+                makeReady(granted[k]);
+            }
+            granted_size = 0;
+            for(int k=0; k<preempted_size; k++){
+                makeReady(preempted[k]);
+            }
+            preempted_size = 0;
+
+            ///// detect and break deadlock (optimistic manager only) /////
+            if(!banker && readySize() == 0 && blocked_size != 0){
+                if(metrics != null){
+                    metrics.deadlock(cycle, blocked_size);
+                }
+                breakDeadlock();
+            }
+
+            ///// (4) move freed resources to available /////
+            for(int j=0; j<available.length; j++){
+                if(freed[j] != 0){
+                    available[j] += freed[j];
+                    freed[j] = 0;
+                    markDirty(j);
+                }
+            }
+            if(metrics != null){
+                metrics.endCycle(cycle, readySize(), blocked_size);
+            }
+
+            cycle++;
+
+            if(event_driven && !changed){
+                skipIdleCycles();
+            }
+        }
+
+        if(checkpoints != null){
+            checkpoints.finish(this);
+        }
+    }
+
+
+    // number of tasks in the ready queue
+    private int readySize(){
+        return event_driven ? timers.size() : ready_size;
+    }
+
+
+    // add a task to the back of the ready queue
+    private void makeReady(int i){
+        if(event_driven){
+            timers.push(i, table.wake[i], next_seq++);
+        }else{
+            ready[ready_size++] = i;
+        }
+    }
+
+
+    // event-driven step (2): run the tasks whose delays end this cycle, in ready queue order
+    private void runDueTasks(){
+        while(timers.size() != 0 && timers.peekTime() <= cycle){
+            int i = timers.pop();
+            if(step(i)){
+                // the task moved on to its next activity, which can't run before next cycle
+                timers.reschedule(i, table.wake[i]);
+            }
+        }
+    }
+
+
+    // round-robin step (2): the first cpus tasks in the ready queue run (or compute through their delay); the others
+    // wait for a cpu, and their delays don't count down. a task that used up its quantum is preempted
+    private void runRoundRobin(){
+        int kept = 0;
+        int idle = cpus;
+        for(int k=0; k<ready_size; k++){
+            int i = ready[k];
+            if(idle == 0){
+                if(table.wake[i] > cycle){
+                    table.wake[i]++;
+                }
+                table.waiting_time[i]++;
+                ready[kept++] = i;
+                continue;
+            }
+            idle--;
+            if(!step(i)){
+                // it left the ready queue; it gets a fresh quantum when it comes back
+                slice_left[i] = quantum;
+            }else if(--slice_left[i] == 0){
+                slice_left[i] = quantum;
+                preempted[preempted_size++] = i;
+            }else{
+                ready[kept++] = i;
+            }
+        }
+        ready_size = kept;
+    }
+
+
+    // nothing was freed or aborted last cycle, so every blocked request will keep failing and no ready task
+    // does anything until the next wake-up: jump straight there (blocked tasks still wait for every skipped cycle,
+    // which is counted when they leave their wait queue)
+    private void skipIdleCycles(){
+        if(timers.size() == 0 || timers.peekTime() <= cycle){
+            return;
+        }
+        cycle = (int) timers.peekTime();
+    }
+
+
+    // more units of resource j are available: its waiters get checked again next time blocked tasks are serviced
+    private void markDirty(int j){
+        changed = true;
+        if(!is_dirty[j]){
+            is_dirty[j] = true;
+            dirty[dirty_size++] = j;
+        }
+    }
+
+
+    // fifo: grant every waiter on a dirty resource whose request fits (waiters on different resources never compete,
+    // so each wait queue is walked on its own), then list the granted tasks in blocked queue order
+    private void serviceWaiters(){
+        for(int d=0; d<dirty_size; d++){
+            int j = dirty[d];
+            is_dirty[j] = false;
+            int i = wait_head[j];
+            while(i >= 0){
+                int next = wait_next[i];
+                int amount = program.amount[table.pc[i]];
+                if(amount <= available[j]){
+                    grant(i, j, amount);
+                    table.advance(i, cycle);
+                    table.is_blocked[i] = false;
+                    unblock(i, cycle-1);
+                    woken.push(i, block_seq[i]);
+                }
+                i = next;
+            }
+        }
+        dirty_size = 0;
+
+        while(woken.size() != 0){
+            int i = woken.peek();
+            woken.remove(i);
+            granted[granted_size++] = i;
+        }
+    }
+
+
+    // banker (or fifo with vector requests): move the waiters on every dirty resource into woken (which hands them
+    // back in blocked queue order)
+    private void wakeWaiters(){
+        for(int d=0; d<dirty_size; d++){
+            int j = dirty[d];
+            is_dirty[j] = false;
+            wakeQueue(j);
+        }
+        if(dirty_size != 0){
+            wakeQueue(available.length);
+        }
+        dirty_size = 0;
+    }
+
+
+    private void wakeQueue(int j){
+        for(int i = wait_head[j]; i >= 0; i = wait_next[i]){
+            waiting_on[i] = -1;
+            woken.push(i, block_seq[i]);
+        }
+        wait_head[j] = -1;
+        wait_tail[j] = -1;
+    }
+
+
+    // banker (or fifo with vector requests): try to grant a woken task's pending request; if it still can't be
+    // granted it waits again
+    private void serviceBlocked(int i){
+        int pc = table.pc[i];
+        int r = program.resource[pc];
+        int amount = program.amount[pc];
+
+        if(program.op[pc] == Program.VREQUEST){
+            int[] amounts = program.vectors[r];
+            int failed = unavailableVector(i, amounts);
+            if(failed < 0){
+                grantVector(i, amounts);
+                table.advance(i, cycle);
+                table.is_blocked[i] = false;
+                unblock(i, cycle-1);
+                granted[granted_size++] = i;
+            }else{
+                enqueue(i, failed);
+                if(metrics != null){
+                    metrics.deny(reportedResource(failed, amounts));
+                }
+            }
+            return;
+        }
+
+        int failed = unavailableResource(i, r, amount);
+
+        if(failed < 0){
+            grant(i, r, amount);
+            table.advance(i, cycle);
+            table.is_blocked[i] = false;
+            unblock(i, cycle-1);
+            granted[granted_size++] = i;
+        }else{
+            enqueue(i, failed);
+            if(metrics != null){
+                metrics.deny(r);
+            }
+        }
+    }
+
+
+    // the resource that keeps a request from being granted right now (-1 if it can be granted)
+    // (the banker's safety check runs first, as in Banker.runBanker(), so unsafe states are printed in the same order)
+    private int unavailableResource(int i, int r, int amount){
+        int failed = banker ? safety.firstUnsafeResource(i, r, amount, available) : -1;
+        if(amount > available[r]){
+            return r;
+        }
+        return failed;
+    }
+
+
+    // the queue a vector request waits in if it can't be granted right now (-1 if it can be granted): the first
+    // resource it is short of, or the extra queue if the banker finds granting it unsafe
+    private int unavailableVector(int i, int[] amounts){
+        int failed = SafetyCheck.firstShort(amounts, available);
+        if(failed < 0 && banker && !safety.isSafeVector(i, amounts, available)){
+            return available.length;
+        }
+        return failed;
+    }
+
+
+    // the resource a denied vector request is reported on (its first resource if it is in the extra queue)
+    private int reportedResource(int failed, int[] amounts){
+        return failed < available.length ? failed : SafetyCheck.firstRequested(amounts);
+    }
+
+
+    // put a task that just blocked into the blocked queue, waiting on resource j
+    private void block(int i, int j){
+        table.is_blocked[i] = true;
+        block_cycle[i] = cycle;
+        block_seq[i] = next_seq++;
+        blocked_size++;
+        if(!banker){
+            blocked_order.push(i, block_seq[i]);
+            blocked_ids.push(i, 0);
+        }
+        enqueue(i, j);
+    }
+
+
+    // take a task out of the blocked queue; it waited in every cycle up to and including last_wait
+    // (the cycle it blocked in was counted when it blocked)
+    private void unblock(int i, int last_wait){
+        table.waiting_time[i] += last_wait - block_cycle[i];
+        blocked_size--;
+        if(!banker){
+            blocked_order.remove(i);
+            blocked_ids.remove(i);
+        }
+        if(waiting_on[i] >= 0){
+            dequeue(i);
+        }
+    }
+
+
+    // add a blocked task to the back of resource j's wait queue
+    private void enqueue(int i, int j){
+        waiting_on[i] = j;
+        wait_next[i] = -1;
+        wait_prev[i] = wait_tail[j];
+        if(wait_tail[j] >= 0){
+            wait_next[wait_tail[j]] = i;
+        }else{
+            wait_head[j] = i;
+        }
+        wait_tail[j] = i;
+    }
+
+
+    // unlink a blocked task from the wait queue it is in
+    private void dequeue(int i){
+        int j = waiting_on[i];
+        if(wait_prev[i] >= 0){
+            wait_next[wait_prev[i]] = wait_next[i];
+        }else{
+            wait_head[j] = wait_next[i];
+        }
+        if(wait_next[i] >= 0){
+            wait_prev[wait_next[i]] = wait_prev[i];
+        }else{
+            wait_tail[j] = wait_prev[i];
+        }
+        waiting_on[i] = -1;
+    }
+
+
+    // run (or delay) the current activity of a ready task; returns false if the task left the ready queue
+    private boolean step(int i){
+
+        // if the activity's delay hasn't run out yet, wait
+        if(table.wake[i] > cycle){
+            return true;
+        }
+
+        int pc = table.pc[i];
+        int r = program.resource[pc];
+        int amount = program.amount[pc];
+
+        switch(program.op[pc]){
+
+            case Program.INITIATE:
+                // the banker aborts a task whose initial claim exceeds the number of units present (not the number
+                // available: with round-robin or delays, other tasks may already hold some of them)
+                if(banker && amount > units[r]){
+                    out.println("Banker aborts task " + (i+1) + " before run begins:");
+                    out.println("\tclaim for resource " + (r+1) + " (" + amount + ") exceeds number of units present (" + units[r] + ")");
+                    abort(i);
+                    return false;
+                }
+                table.initial_claims.set(i, r, amount);
+                safety.changed(i, r);
+                table.advance(i, cycle);
+                return true;
+
+            case Program.REQUEST:
+                int failed = unavailableResource(i, r, amount);
+
+                // the banker aborts a task whose request exceeds its claim
+                if(banker && amount + resource_claims.get(i, r) > table.initial_claims.get(i, r)){
+                    out.println("During cycle " + cycle + "-" + (cycle + 1) + " of Banker's algorithm");
+                    out.print("\tTask " + (i+1) + "'s request exceeds its claim; aborted; ");
+                    out.println(resource_claims.get(i, r) + " units available next cycle");
+                    abort(i);
+                    return false;
+                }
+                else if(failed < 0){
+                    grant(i, r, amount);
+                    table.advance(i, cycle);
+                    return true;
+                }
+                else{
+                    // don't grant the request and block the task
+                    table.waiting_time[i]++;
+                    block(i, failed);
+                    if(metrics != null){
+                        metrics.deny(r);
+                    }
+                    if(trace != null){
+                        trace.record(TraceRecorder.BLOCK, cycle, i, r, amount);
+                    }
+                    return false;
+                }
+
+            case Program.VREQUEST:
+                int[] amounts = program.vectors[r];
+
+                // the banker aborts a task whose request exceeds its claim for any resource
+                int over = banker ? exceededClaim(i, amounts) : -1;
+                if(over >= 0){
+                    out.println("During cycle " + cycle + "-" + (cycle + 1) + " of Banker's algorithm");
+                    out.print("\tTask " + (i+1) + "'s request exceeds its claim; aborted; ");
+                    out.println(resource_claims.get(i, over) + " units available next cycle");
+                    abort(i);
+                    return false;
+                }
+
+                int unavailable = unavailableVector(i, amounts);
+                if(unavailable < 0){
+                    grantVector(i, amounts);
+                    table.advance(i, cycle);
+                    return true;
+                }
+
+                // don't grant the request and block the task
+                int reported = reportedResource(unavailable, amounts);
+                table.waiting_time[i]++;
+                block(i, unavailable);
+                if(metrics != null){
+                    metrics.deny(reported);
+                }
+                if(trace != null){
+                    trace.record(TraceRecorder.BLOCK, cycle, i, reported, amounts[reported]);
+                }
+                return false;
+
+            case Program.RELEASE:
+                // release the task's claims into freed
+                resource_claims.add(i, r, -amount);
+                freed[r] += amount;
+                safety.changed(i, r);
+                table.advance(i, cycle);
+                if(trace != null){
+                    trace.record(TraceRecorder.RELEASE, cycle, i, r, amount);
+                }
+                return true;
+
+            case Program.TERMINATE:
+                // terminate the task -- set the finish time and remove it from the queue
+                table.total_time[i] = cycle;
+                safety.retire(i);
+                table.advance(i, cycle);
+                if(trace != null){
+                    trace.record(TraceRecorder.TERMINATE, cycle, i, -1, 0);
+                }
+                return false;
+
+            default:
+                throw new IllegalStateException("Unknown opcode " + program.op[pc] + " for task " + (i+1));
+        }
+    }
+
+
+    // grant a request and subtract its amount from available
+    private void grant(int i, int r, int amount){
+        resource_claims.add(i, r, amount);
+        available[r] -= amount;
+        safety.changed(i, r);
+        if(metrics != null){
+            metrics.grant(r);
+        }
+        if(trace != null){
+            trace.record(TraceRecorder.GRANT, cycle, i, r, amount);
+        }
+    }
+
+
+    // grant every resource of a vector request
+    private void grantVector(int i, int[] amounts){
+        for(int j=0; j<amounts.length; j++){
+            if(amounts[j] != 0){
+                grant(i, j, amounts[j]);
+            }
+        }
+    }
+
+
+    // the first resource for which a vector request goes over the task's claim (-1 if there is none)
+    private int exceededClaim(int i, int[] amounts){
+        for(int j=0; j<amounts.length; j++){
+            if(amounts[j] + resource_claims.get(i, j) > table.initial_claims.get(i, j)){
+                return j;
+            }
+        }
+        return -1;
+    }
+
+
+    // true if every unit a blocked task's request asks for is available
+    private boolean fits(int i){
+        int pc = table.pc[i];
+        if(program.op[pc] == Program.VREQUEST){
+            return SafetyCheck.covers(available, program.vectors[program.resource[pc]]);
+        }
+        return program.amount[pc] <= available[program.resource[pc]];
+    }
+
+
+    // abort a task and release all of its claims back to available
+    private void abort(int i){
+        table.is_aborted[i] = true;
+        changed = true;
+        safety.retire(i);
+        int released = 0;
+        for(int j=0; j<available.length; j++){
+            int held = resource_claims.get(i, j);
+            if(held != 0){
+                available[j] += held;
+                released += held;
+                resource_claims.set(i, j, 0);
+                safety.changed(i, j);
+                markDirty(j);
+            }
+        }
+        if(metrics != null){
+            metrics.abort(cycle, i, released);
+        }
+        if(trace != null){
+            trace.record(TraceRecorder.ABORT, cycle, i, -1, released);
+        }
+    }
+
+
+    // abort the lowest numbered blocked tasks until the request at the head of the blocked queue can be granted,
+    // then move that task back to the ready queue (every blocked task failed its check in this cycle)
+    private void breakDeadlock(){
+
+        while(blocked_size != 0 && !fits(blocked_order.peek())){
+            int lowest = blocked_ids.peek();
+            unblock(lowest, cycle);
+            abort(lowest);
+        }
+
+        // move next task to ready
+        if(blocked_size != 0){
+            int next = blocked_order.peek();
+            unblock(next, cycle);
+            table.is_blocked[next] = false;
+            table.wake[next] = cycle + 1;
+            makeReady(next);
+        }
+    }
+
+
+    ///// SNAPSHOTS /////
+    // the state between two cycles: the woken, granted and preempted lists are always empty then, and the fifo blocked heaps,
+    // the dirty flags and the tasks still in the safety check follow from the rest of the state
+
+    // the size in bytes of the state written by writeState()
+    public int stateSize(){
+        int n = table.num_tasks;
+        int m = available.length;
+        int ready_entries = event_driven ? timers.size() * 20 : ready_size * 4;
+        return 8 + 2 + 4*3 + 8                  // fingerprint, mode, sizes, cycle, next_seq
+             + 4*2 + (slice_left != null ? 4*n : 0)     // round-robin quantum, cpus and slices
+             + 4*m*2 + 4*n*m*2                  // available, freed, claims, initial claims
+             + 4*n*4 + n                        // per-task columns and flags
+             + 4*(m+1)*2 + 4*n*4 + 8*n          // wait queues
+             + 4 + 4*dirty_size + 4 + ready_entries;
+    }
+
+
+    // write the whole state of the simulation (out must have stateSize() bytes left)
+    public void writeState(ByteBuffer out){
+        int n = table.num_tasks;
+
+        out.putLong(program.fingerprint());
+        out.put((byte) (banker ? 1 : 0));
+        out.put((byte) (event_driven ? 1 : 0));
+        out.putInt(n);
+        out.putInt(available.length);
+        out.putInt(cycle);
+        out.putLong(next_seq);
+        out.putInt(slice_left != null ? quantum : 0);
+        out.putInt(slice_left != null ? cpus : 0);
+        if(slice_left != null){
+            putInts(out, slice_left);
+        }
+
+        putInts(out, available);
+        putInts(out, freed);
+        resource_claims.write(out);
+        table.initial_claims.write(out);
+
+        // per-task columns
+        putInts(out, table.pc);
+        putInts(out, table.wake);
+        putInts(out, table.waiting_time);
+        putInts(out, table.total_time);
+        for(int i=0; i<n; i++){
+            out.put((byte) ((table.is_blocked[i] ? 1 : 0) | (table.is_aborted[i] ? 2 : 0)));
+        }
+
+        // wait queues
+        putInts(out, wait_head);
+        putInts(out, wait_tail);
+        putInts(out, wait_next);
+        putInts(out, wait_prev);
+        putInts(out, waiting_on);
+        putInts(out, block_cycle);
+        out.asLongBuffer().put(block_seq);
+        out.position(out.position() + 8*n);
+        out.putInt(dirty_size);
+        for(int d=0; d<dirty_size; d++){
+            out.putInt(dirty[d]);
+        }
+
+        // ready queue (in queue order, or the timer queue's entries)
+        if(event_driven){
+            out.putInt(timers.size());
+            for(int k=0; k<timers.size(); k++){
+                int i = timers.task(k);
+                out.putInt(i);
+                out.putLong(timers.time(i));
+                out.putLong(timers.seq(i));
+            }
+        }else{
+            out.putInt(ready_size);
+            out.asIntBuffer().put(ready, 0, ready_size);
+            out.position(out.position() + 4*ready_size);
+        }
+    }
+
+
+    // replace the state of a freshly constructed simulation with one written by writeState()
+    // (the simulation must run the same program, in the same mode)
+    public void readState(ByteBuffer in) throws IOException {
+        int n = table.num_tasks;
+        int m = available.length;
+
+        if(in.getLong() != program.fingerprint()){
+            throw new IOException("snapshot was taken from a different input");
+        }
+        if((in.get() != 0) != banker || (in.get() != 0) != event_driven){
+            throw new IOException("snapshot was taken from a different simulation mode");
+        }
+        if(in.getInt() != n || in.getInt() != m){
+            throw new IOException("snapshot has a different number of tasks or resource types");
+        }
+        cycle = in.getInt();
+        next_seq = in.getLong();
+        int rr_quantum = in.getInt();
+        int rr_cpus = in.getInt();
+        if(rr_quantum != (slice_left != null ? quantum : 0) || rr_cpus != (slice_left != null ? cpus : 0)){
+            throw new IOException("snapshot was taken with different round-robin settings");
+        }
+        if(slice_left != null){
+            getInts(in, slice_left);
+        }
+
+        getInts(in, available);
+        getInts(in, freed);
+        resource_claims.read(in);
+        table.initial_claims.read(in);
+
+        getInts(in, table.pc);
+        getInts(in, table.wake);
+        getInts(in, table.waiting_time);
+        getInts(in, table.total_time);
+        blocked_size = 0;
+        for(int i=0; i<n; i++){
+            int flags = in.get();
+            table.is_blocked[i] = (flags & 1) != 0;
+            table.is_aborted[i] = (flags & 2) != 0;
+        }
+
+        getInts(in, wait_head);
+        getInts(in, wait_tail);
+        getInts(in, wait_next);
+        getInts(in, wait_prev);
+        getInts(in, waiting_on);
+        getInts(in, block_cycle);
+        in.asLongBuffer().get(block_seq);
+        in.position(in.position() + 8*n);
+        dirty_size = in.getInt();
+        for(int j=0; j<m; j++){
+            is_dirty[j] = false;
+        }
+        for(int d=0; d<dirty_size; d++){
+            dirty[d] = in.getInt();
+            is_dirty[dirty[d]] = true;
+        }
+
+        // rebuild the ready queue
+        if(event_driven){
+            timers = new TimerQueue(n);
+            int size = in.getInt();
+            for(int k=0; k<size; k++){
+                int i = in.getInt();
+                long time = in.getLong();
+                timers.push(i, time, in.getLong());
+            }
+        }else{
+            ready_size = in.getInt();
+            in.asIntBuffer().get(ready, 0, ready_size);
+            in.position(in.position() + 4*ready_size);
+        }
+
+        // rebuild what follows from the rest of the state
+        safety.reindex();
+        for(int i=0; i<n; i++){
+            if(table.is_blocked[i] && !table.is_aborted[i]){
+                blocked_size++;
+                if(!banker){
+                    blocked_order.push(i, block_seq[i]);
+                    blocked_ids.push(i, 0);
+                }
+            }
+            if(table.is_aborted[i] || (program.hasActivities(i) && table.pc[i] == program.start[i+1])){
+                safety.retire(i);
+            }
+        }
+    }
+
+
+    private static void putInts(ByteBuffer out, int[] values){
+        out.asIntBuffer().put(values);
+        out.position(out.position() + 4*values.length);
+    }
+
+
+    private static void getInts(ByteBuffer in, int[] values){
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4*values.length);
+    }
+
+
+    // collect the per-task results (in order of task ID)
+    public Result result(){
+        int n = 0;
+        for(int i=0; i<table.num_tasks; i++){
+            if(program.hasActivities(i)){
+                n++;
+            }
+        }
+
+        Result result = new Result(banker ? "BANKER'S" : "FIFO", n);
+        int k = 0;
+        for(int i=0; i<table.num_tasks; i++){
+            if(program.hasActivities(i)){
+                result.task_ids[k] = i+1;
+                result.total_time[k] = table.total_time[i];
+                result.waiting_time[k] = table.waiting_time[i];
+                result.aborted[k] = table.is_aborted[i];
+                k++;
+            }
+        }
+        return result;
+    }
+
+}
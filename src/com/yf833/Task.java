@@ -1,6 +1,6 @@
 package com.yf833;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayDeque;
 
 
 // represents a task (process)
@@ -14,15 +14,20 @@ public class Task {
 
     public boolean isBlocked = false;   // tracks if this task is blocked or not
     public boolean isAborted = false;   // set to true if the task is aborted (used when printing output)
+    public int start_cycle = -1;        // the cycle in which the task's first initiate ran (-1 until then)
 
-    public LinkedBlockingQueue<Activity> activities;    // a queue of activites for this task
+    public ArrayDeque<Activity> activities;     // a queue of activites for this task
+
+    public TaskList list;               // the ready or blocked queue the task is in (null if neither)
+    public Task list_prev;              // neighbours in that queue
+    public Task list_next;
 
 
     // constructor //
     public Task(int taskID, int num_resources){
         this.taskID = taskID;
 
-        this.activities = new LinkedBlockingQueue<>();
+        this.activities = new ArrayDeque<>();
 
         //default values for total_time and waiting_time
         this.total_time = 0;
@@ -44,7 +49,7 @@ public class Task {
         this.initial_claims = t2.initial_claims.clone();
 
         // copy activities queue
-        this.activities = new LinkedBlockingQueue<>();
+        this.activities = new ArrayDeque<>();
         for(Activity a : t2.activities){
             this.activities.add(new Activity(a));
         }
@@ -0,0 +1,139 @@
+package com.yf833;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+
+// an unsynchronized doubly linked queue of tasks whose links live in the tasks themselves (a task is in at most one
+// list at a time), used for the ready and blocked queues of the single-threaded simulators
+// add, poll and remove are O(1); an iterator has already stepped past the task it returned, so the current task can
+// be removed (or moved to another list) while iterating
+public class TaskList implements Iterable<Task> {
+
+    private Task head;
+    private Task tail;
+    private int size = 0;
+
+
+    // constructor //
+    public TaskList(){
+    }
+
+
+    // constructor: a list holding the given tasks in the same order //
+    public TaskList(Iterable<Task> tasks){
+        for(Task t : tasks){
+            add(t);
+        }
+    }
+
+
+    public int size(){
+        return size;
+    }
+
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+
+    public boolean contains(Task t){
+        return t.list == this;
+    }
+
+
+    // add a task to the back of the list
+    public void add(Task t){
+        if(t.list != null){
+            throw new IllegalStateException("Task " + t.taskID + " is already in a list");
+        }
+        t.list = this;
+        t.list_prev = tail;
+        t.list_next = null;
+        if(tail != null){
+            tail.list_next = t;
+        }else{
+            head = t;
+        }
+        tail = t;
+        size++;
+    }
+
+
+    // the task at the front of the list (null if empty)
+    public Task peek(){
+        return head;
+    }
+
+
+    // remove and return the task at the front of the list (null if empty)
+    public Task poll(){
+        Task t = head;
+        if(t != null){
+            remove(t);
+        }
+        return t;
+    }
+
+
+    // unlink a task; returns false if it isn't in this list
+    public boolean remove(Task t){
+        if(t.list != this){
+            return false;
+        }
+        if(t.list_prev != null){
+            t.list_prev.list_next = t.list_next;
+        }else{
+            head = t.list_next;
+        }
+        if(t.list_next != null){
+            t.list_next.list_prev = t.list_prev;
+        }else{
+            tail = t.list_prev;
+        }
+        t.list = null;
+        t.list_prev = null;
+        t.list_next = null;
+        size--;
+        return true;
+    }
+
+
+    public Iterator<Task> iterator(){
+        return new Iterator<Task>() {
+            Task next = head;
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public Task next() {
+                if(next == null){
+                    throw new NoSuchElementException();
+                }
+                Task current = next;
+                next = current.list_next;
+                return current;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+
+    public String toString(){
+        StringBuilder sb = new StringBuilder("[");
+        for(Task t = head; t != null; t = t.list_next){
+            sb.append(t.toString());
+            if(t.list_next != null){
+                sb.append(", ");
+            }
+        }
+        return sb.append("]").toString();
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.yf833;
+
+
+
+// holds the state of all tasks as columns of primitive arrays (one slot per task) instead of one Task object per task
+// task i in the table is the task with taskID i+1; the activities themselves live in a shared, read-only Program
+public class TaskTable {
+
+    public int num_tasks;               // number of tasks in the table
+    public int num_resources;           // number of resource types
+    public Program program;             // every task's compiled activities (never modified by the simulation)
+
+    public int[] total_time;            // the total time (# of cycles) that each task has been in the system for
+    public int[] waiting_time;          // the amount of time (# of cycles) that each task has been in the blocked queue
+    public IntMatrix initial_claims;    // the initial resource claims of each task (for all resource types; off-heap)
+
+    public boolean[] is_blocked;        // tracks if each task is blocked or not
+    public boolean[] is_aborted;        // set to true if a task is aborted (used when printing output)
+
+    public int[] pc;                    // program counter: index of each task's current activity in the program
+    public int[] wake;                  // the cycle at which each task's current activity runs (once its delay has passed)
+
+
+    // constructor //
+    public TaskTable(Program program){
+        this(program, IntMatrix.allocate(program.num_tasks, program.num_resources));
+    }
+
+
+    // constructor: the claims go in the given (zeroed) matrix, e.g. one mapped from a scratch file //
+    public TaskTable(Program program, IntMatrix initial_claims){
+        if(initial_claims.rows != program.num_tasks || initial_claims.columns != program.num_resources){
+            throw new IllegalArgumentException("claims matrix is " + initial_claims.rows + "x" + initial_claims.columns
+                    + ", expected " + program.num_tasks + "x" + program.num_resources);
+        }
+        this.num_tasks = program.num_tasks;
+        this.num_resources = program.num_resources;
+        this.program = program;
+
+        this.total_time = new int[num_tasks];
+        this.waiting_time = new int[num_tasks];
+        this.initial_claims = initial_claims;
+
+        this.is_blocked = new boolean[num_tasks];
+        this.is_aborted = new boolean[num_tasks];
+
+        this.pc = new int[num_tasks];
+        this.wake = new int[num_tasks];
+        for(int i=0; i<num_tasks; i++){
+            pc[i] = program.start[i];
+            if(program.hasActivities(i)){
+                wake[i] = program.delay[pc[i]];
+            }
+        }
+    }
+
+
+    // move a task on to its next activity during the given cycle (its delay starts counting down next cycle)
+    public void advance(int i, int cycle){
+        pc[i]++;
+        if(pc[i] < program.start[i+1]){
+            wake[i] = cycle + 1 + program.delay[pc[i]];
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.yf833;
+
+
+
+// a binary min-heap of task indices ordered by (wake-up cycle, sequence #)
+// used by the event-driven simulator as its ready queue: tasks due in the same cycle come out in the order they entered
+public class TimerQueue {
+
+    private int[] heap;                 // task indices in heap order
+    private int size = 0;
+    private long[] time;                // wake-up cycle of each queued task
+    private long[] seq;                 // sequence # of each queued task (breaks ties in queue order)
+
+
+    // constructor //
+    public TimerQueue(int num_tasks){
+        heap = new int[num_tasks];
+        time = new long[num_tasks];
+        seq = new long[num_tasks];
+    }
+
+
+    public int size(){
+        return size;
+    }
+
+
+    // the k-th queued task in heap order (0 <= k < size; used to save the queue, see TableSimulator.writeState)
+    public int task(int k){
+        return heap[k];
+    }
+
+
+    public long time(int task){
+        return time[task];
+    }
+
+
+    public long seq(int task){
+        return seq[task];
+    }
+
+
+    // add a task that wakes up at the given cycle
+    public void push(int task, long wake_cycle, long sequence){
+        time[task] = wake_cycle;
+        seq[task] = sequence;
+
+        int k = size++;
+        while(k > 0){
+            int parent = (k-1) >>> 1;
+            if(!before(task, heap[parent])){
+                break;
+            }
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = task;
+    }
+
+
+    // add a task that was just popped back in with a new wake-up cycle (it keeps its place in queue order)
+    public void reschedule(int task, long wake_cycle){
+        push(task, wake_cycle, seq[task]);
+    }
+
+
+    // the earliest wake-up cycle in the queue
+    public long peekTime(){
+        return time[heap[0]];
+    }
+
+
+    // remove and return the task that wakes up first
+    public int pop(){
+        int top = heap[0];
+        int last = heap[--size];
+
+        int k = 0;
+        int half = size >>> 1;
+        while(k < half){
+            int child = 2*k + 1;
+            if(child+1 < size && before(heap[child+1], heap[child])){
+                child++;
+            }
+            if(!before(heap[child], last)){
+                break;
+            }
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = last;
+
+        return top;
+    }
+
+
+    private boolean before(int a, int b){
+        return time[a] < time[b] || (time[a] == time[b] && seq[a] < seq[b]);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.yf833;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+
+
+// turns a binary trace written by TraceRecorder into text (one line per event) or CSV
+//
+// usage: TraceDecoder [--csv] <trace file>
+public class TraceDecoder {
+
+    ///// MAIN /////
+    public static void main(String[] args) throws IOException {
+        boolean csv = false;
+        File file = null;
+        for(String arg : args){
+            if(arg.equals("--csv")){
+                csv = true;
+            }else{
+                file = new File(arg);
+            }
+        }
+        if(file == null){
+            throw new IllegalArgumentException("usage: TraceDecoder [--csv] <trace file>");
+        }
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        decode(file, csv, out);
+        out.flush();
+    }
+
+
+    // print every record of a trace file; returns the number of records
+    public static long decode(File file, boolean csv, PrintStream out) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))){
+
+            if(in.readInt() != TraceRecorder.MAGIC){
+                throw new IOException(file + " is not a trace file");
+            }
+            int version = in.readInt();
+            if(version < 1 || version > TraceRecorder.VERSION){
+                throw new IOException(file + " has trace version " + version + " (expected 1 to " + TraceRecorder.VERSION + ")");
+            }
+            int num_tasks = in.readInt();
+            int num_resources = in.readInt();
+
+            if(csv){
+                out.println("cycle,event,task,resource,amount");
+            }else{
+                out.println("# " + num_tasks + " tasks, " + num_resources + " resource types");
+            }
+
+            long count = 0;
+            while(true){
+                int cycle;
+                try{
+                    cycle = in.readInt();
+                }catch(EOFException e){
+                    return count;
+                }
+                byte event = in.readByte();
+                int task = in.readInt();
+                int resource = in.readInt();
+                int amount = in.readInt();
+                count++;
+
+                String name = event > 0 && event < TraceRecorder.EVENT_NAMES.length ? TraceRecorder.EVENT_NAMES[event] : "unknown(" + event + ")";
+                if(csv){
+                    out.println(cycle + "," + name + "," + task + "," + resource + "," + amount);
+                }else{
+                    out.println(describe(cycle, event, name, task, resource, amount));
+                }
+            }
+        }
+    }
+
+
+    // one event as a line of text
+    private static String describe(int cycle, byte event, String name, int task, int resource, int amount){
+        if(event == TraceRecorder.GAP){
+            return "cycles " + cycle + "-" + task + ": " + amount + " record(s) dropped (trace writer fell behind)";
+        }
+        String prefix = "cycle " + cycle + ": task " + task + " ";
+        if(event == TraceRecorder.GRANT){
+            return prefix + "granted " + amount + " unit(s) of resource " + resource;
+        }else if(event == TraceRecorder.BLOCK){
+            return prefix + "blocked on " + amount + " unit(s) of resource " + resource;
+        }else if(event == TraceRecorder.RELEASE){
+            return prefix + "released " + amount + " unit(s) of resource " + resource;
+        }else if(event == TraceRecorder.ABORT){
+            return prefix + "aborted, " + amount + " unit(s) released";
+        }else if(event == TraceRecorder.TERMINATE){
+            return prefix + "terminated";
+        }
+        return prefix + name + " " + resource + " " + amount;
+    }
+
+}
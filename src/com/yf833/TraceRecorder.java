@@ -0,0 +1,198 @@
+package com.yf833;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+
+
+// writes a binary trace of every state change of a simulation (grant, block, release, abort, terminate)
+// records are fixed size and go into a buffer owned by the simulation thread; a full buffer is handed to a background
+// writer thread and replaced by a free one, so the simulation never waits for the file. if the writer falls behind,
+// new buffers are allocated up to max_buffers; past that, records are dropped at once until the writer hands a buffer
+// back, and a GAP record marks where they were (so a trace with holes can't be mistaken for a complete one)
+// the writer returns buffers through a lock-free queue that the simulation thread only polls; handing a full buffer
+// over takes the writer queue's lock briefly, but never waits for the writer
+//
+// file layout (big-endian): magic "DLTR", version, # of tasks, # of resources, then one RECORD_SIZE byte record per
+// event: cycle (int), event (byte), task ID (int), resource ID (int), amount (int). IDs are 1-based; an abort
+// has resource 0 and the total units released as its amount, a terminate has resource 0 and amount 0. a gap has
+// the first cycle with dropped records as its cycle, the last one in place of the task ID, resource 0 and the #
+// of records dropped as its amount (read them back with TraceDecoder)
+public class TraceRecorder {
+
+    public static final int MAGIC = 0x444c5452;     // "DLTR"
+    public static final int VERSION = 2;           // version 1 traces are the same, without gaps
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 17;
+
+    public static final byte GRANT = 1;
+    public static final byte BLOCK = 2;
+    public static final byte RELEASE = 3;
+    public static final byte ABORT = 4;
+    public static final byte TERMINATE = 5;
+    public static final byte GAP = 6;
+    public static final String[] EVENT_NAMES = {"", "grant", "block", "release", "abort", "terminate", "gap"};
+
+    public long records = 0;            // records written into buffers
+    public long dropped = 0;            // records dropped because every buffer was waiting to be written
+    public long gaps = 0;               // gap records written (one per run of dropped records)
+
+    private int buffer_size;
+    private int max_buffers;
+    private int buffers = 1;            // buffers allocated so far
+    private ByteBuffer current;         // the buffer the simulation thread is filling
+    private int gap_first;              // first and last cycle of the records dropped since the last one recorded
+    private int gap_last;
+    private long gap_dropped = 0;       // # of records dropped since the last one recorded
+
+    private LinkedBlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<>();     // buffers waiting for the writer
+    private ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>(); // buffers the writer is done with
+    private FileChannel channel;
+    private Thread writer;
+    private volatile IOException failure;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);                   // tells the writer to finish
+
+
+    // constructor: 4 buffers of 1MB //
+    public TraceRecorder(File file, int num_tasks, int num_resources) throws IOException {
+        this(file, num_tasks, num_resources, 1 << 20, 4);
+    }
+
+
+    // constructor //
+    public TraceRecorder(File file, int num_tasks, int num_resources, int buffer_size, int max_buffers) throws IOException {
+        this.buffer_size = Math.max(buffer_size, HEADER_SIZE + 2*RECORD_SIZE);
+        this.max_buffers = Math.max(max_buffers, 2);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+
+        current = ByteBuffer.allocateDirect(this.buffer_size);
+        current.putInt(MAGIC).putInt(VERSION).putInt(num_tasks).putInt(num_resources);
+
+        writer = new Thread(new Runnable() {
+            public void run() {
+                writeLoop();
+            }
+        }, "trace-writer " + file.getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    // record one event; IDs are 0-based here (they are stored 1-based, like the input file and the output)
+    public void record(byte event, int cycle, int task, int resource, int amount){
+        if(current.remaining() < RECORD_SIZE && !swap()){
+            if(gap_dropped == 0){
+                gap_first = cycle;
+            }
+            gap_last = cycle;
+            gap_dropped++;
+            dropped++;
+            return;
+        }
+        if(gap_dropped != 0){
+            // the buffer was just swapped, so it has room for the gap record and this one
+            writeGap();
+        }
+        current.putInt(cycle).put(event).putInt(task+1).putInt(resource+1).putInt(amount);
+        records++;
+    }
+
+
+    // hand the current buffer to the writer and take a free one; false if there is none and no more may be allocated
+    private boolean swap(){
+        ByteBuffer next = free.poll();
+        if(next == null && buffers < max_buffers){
+            next = ByteBuffer.allocateDirect(buffer_size);
+            buffers++;
+        }
+        if(next == null){
+            return false;
+        }
+        current.flip();
+        full.add(current);
+        current = next;
+        return true;
+    }
+
+
+    // a buffer the writer is done with, waiting for one as long as the writer is still working (null if it failed)
+    // only close() waits: the simulation is over by then
+    private ByteBuffer waitForFree(){
+        ByteBuffer next = free.poll();
+        while(next == null && failure == null && writer.isAlive()){
+            try{
+                Thread.sleep(1);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            next = free.poll();
+        }
+        return next;
+    }
+
+
+    // mark the records dropped since the last one recorded
+    private void writeGap(){
+        current.putInt(gap_first).put(GAP).putInt(gap_last).putInt(0).putInt((int) Math.min(gap_dropped, Integer.MAX_VALUE));
+        gaps++;
+        gap_dropped = 0;
+    }
+
+
+    private void writeLoop(){
+        try{
+            while(true){
+                ByteBuffer buffer = full.take();
+                if(buffer == END){
+                    return;
+                }
+                while(buffer.hasRemaining()){
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                free.add(buffer);
+            }
+        }catch(IOException e){
+            failure = e;
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    // write out everything recorded so far and close the file (waits for the writer thread)
+    public void close() throws IOException {
+        if(gap_dropped != 0){
+            // a trace that ends in dropped records still gets its gap record (the buffer is full, so wait for a free one)
+            ByteBuffer next = waitForFree();
+            if(next != null){
+                current.flip();
+                full.add(current);
+                current = next;
+                writeGap();
+            }
+        }
+        current.flip();
+        full.add(current);
+        full.add(END);
+        try{
+            writer.join();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if(failure != null){
+            throw failure;
+        }
+    }
+
+}
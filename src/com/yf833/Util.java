@@ -1,5 +1,7 @@
 package com.yf833;
 
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -37,14 +39,20 @@ public class Util {
 
     // helper function for printing a 2D array
     public static void print2DArray(int [][] array){
+        print2DArray(array, System.out);
+    }
+
+
+    // helper function for printing a 2D array to the given stream
+    public static void print2DArray(int [][] array, PrintStream out){
         if(array == null || array.length < 1 || array[0].length < 1){
             throw new IllegalArgumentException("array is empty");
         }
         for (int i=0; i< array.length; i++){
             for(int j=0; j<array[0].length; j++){
-                System.out.print("[" + array[i][j] + "]");
+                out.print("[" + array[i][j] + "]");
             }
-            System.out.println();
+            out.println();
         }
     }
 
@@ -84,13 +92,17 @@ public class Util {
 
     // prints a summary of a task (for final output)
     public static void printTaskSumamry(Task t){
-        System.out.print("Task " + t.taskID + "\t");
-        System.out.print(t.total_time + "\t");
-        System.out.print(t.waiting_time + "\t");
+        System.out.println("Task " + t.taskID + "\t" + t.total_time + "\t" + t.waiting_time + "\t" + Result.percent(t.waiting_time, t.total_time) + "%\t");
+    }
+
 
-        int percentval = Math.round(((float) t.waiting_time / (float) t.total_time) * 100);
-        System.out.print(percentval + "%\t");
-        System.out.println();
+    // returns the number of bytes allocated so far by the current thread (-1 if the JVM can't measure it)
+    public static long allocatedBytes(){
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean){
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
     }
 
 }
@@ -0,0 +1,140 @@
+package com.yf833;
+
+
+
+// the victim policies available to the optimistic (FIFO) simulation; each keeps the blocked tasks in an indexed
+// heap, so joining, leaving and choosing cost O(log n) (ties always go to the lowest numbered task)
+public class VictimPolicies {
+
+    public static final String[] NAMES = {"lowest", "fewest-held", "least-progress", "youngest", "min-victims"};
+
+
+    // create a policy by name (one of NAMES)
+    public static VictimPolicy create(String name, int num_tasks, int num_resources){
+        if(name.equals("lowest")){
+            return new LowestId(num_tasks);
+        }else if(name.equals("fewest-held")){
+            return new FewestHeld(num_tasks);
+        }else if(name.equals("least-progress")){
+            return new LeastProgress(num_tasks);
+        }else if(name.equals("youngest")){
+            return new Youngest(num_tasks);
+        }else if(name.equals("min-victims")){
+            return new MinVictims(num_tasks, num_resources);
+        }
+        throw new IllegalArgumentException("Unknown victim policy " + name);
+    }
+
+
+    // base for the policies that rank every blocked task by a single key (smallest key is aborted first)
+    public abstract static class Keyed implements VictimPolicy {
+
+        private IndexedHeap heap;
+        private Task[] tasks;           // blocked tasks by index (taskID-1)
+
+        public Keyed(int num_tasks){
+            heap = new IndexedHeap(num_tasks);
+            tasks = new Task[num_tasks];
+        }
+
+        protected abstract long key(Task t, int[] claims, int cycle);
+
+        public void blocked(Task t, int[] claims, int cycle){
+            tasks[t.taskID-1] = t;
+            heap.push(t.taskID-1, key(t, claims, cycle));
+        }
+
+        public void unblocked(Task t){
+            heap.remove(t.taskID-1);
+            tasks[t.taskID-1] = null;
+        }
+
+        public Task choose(Task next){
+            return tasks[heap.peek()];
+        }
+    }
+
+
+    // the lowest numbered task (the original recovery rule)
+    public static class LowestId extends Keyed {
+        public LowestId(int num_tasks){
+            super(num_tasks);
+        }
+        protected long key(Task t, int[] claims, int cycle){
+            return t.taskID;
+        }
+    }
+
+
+    // the task holding the fewest units (summed over all resource types)
+    public static class FewestHeld extends Keyed {
+        public FewestHeld(int num_tasks){
+            super(num_tasks);
+        }
+        protected long key(Task t, int[] claims, int cycle){
+            long held = 0;
+            for(int units : claims){
+                held += units;
+            }
+            return held;
+        }
+    }
+
+
+    // the task that has run for the fewest cycles (time in the system minus time spent waiting)
+    public static class LeastProgress extends Keyed {
+        public LeastProgress(int num_tasks){
+            super(num_tasks);
+        }
+        protected long key(Task t, int[] claims, int cycle){
+            return cycle - t.waiting_time;
+        }
+    }
+
+
+    // the task that started last (its initiate finished in the latest cycle)
+    public static class Youngest extends Keyed {
+        public Youngest(int num_tasks){
+            super(num_tasks);
+        }
+        protected long key(Task t, int[] claims, int cycle){
+            return -t.start_cycle;
+        }
+    }
+
+
+    // the task holding the most units of the resource the head of the blocked queue is waiting for, so the fewest
+    // tasks are aborted to satisfy it (one heap per resource type)
+    public static class MinVictims implements VictimPolicy {
+
+        private IndexedHeap[] heaps;
+        private Task[] tasks;
+
+        public MinVictims(int num_tasks, int num_resources){
+            heaps = new IndexedHeap[num_resources];
+            for(int r=0; r<num_resources; r++){
+                heaps[r] = new IndexedHeap(num_tasks);
+            }
+            tasks = new Task[num_tasks];
+        }
+
+        public void blocked(Task t, int[] claims, int cycle){
+            tasks[t.taskID-1] = t;
+            for(int r=0; r<heaps.length; r++){
+                heaps[r].push(t.taskID-1, -claims[r]);
+            }
+        }
+
+        public void unblocked(Task t){
+            for(IndexedHeap heap : heaps){
+                heap.remove(t.taskID-1);
+            }
+            tasks[t.taskID-1] = null;
+        }
+
+        public Task choose(Task next){
+            return tasks[heaps[next.activities.peek().resourceID-1].peek()];
+        }
+    }
+
+}
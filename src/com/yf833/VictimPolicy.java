@@ -0,0 +1,19 @@
+package com.yf833;
+
+
+
+// chooses which blocked task to abort when the optimistic (FIFO) simulation breaks a deadlock
+// the simulation reports every task entering and leaving the blocked queue, so a policy can keep its own index
+// of the candidates and pick a victim without scanning the queue
+public interface VictimPolicy {
+
+    // the task joined the blocked queue; claims is its current allocation row (it doesn't change while blocked)
+    void blocked(Task t, int[] claims, int cycle);
+
+    // the task left the blocked queue (its request was granted, it was moved back to ready, or it was aborted)
+    void unblocked(Task t);
+
+    // pick the next victim while next (the head of the blocked queue) still can't be granted its request
+    Task choose(Task next);
+
+}
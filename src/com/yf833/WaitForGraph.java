@@ -0,0 +1,166 @@
+package com.yf833;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+
+
+// wait-for graph for the optimistic (FIFO) simulation: a blocked task has an edge to every task holding units of
+// the resource it is waiting for; the edges are kept as one holder set per resource and updated on every grant,
+// release and abort
+//
+// detection runs each time a task blocks: a set of blocked tasks is deadlocked when none of their requests fit in
+// the units that will be available next cycle and every unit they wait for is held inside the set (a knot), since
+// then no release can ever reach them; blocked tasks that only wait on a deadlocked set are added to it
+public class WaitForGraph {
+
+    public ArrayList<Integer> deadlock_cycles = new ArrayList<>();  // cycle in which each deadlock was found
+    public ArrayList<int[]> deadlocks = new ArrayList<>();          // task IDs in each deadlock (same order as deadlock_cycles)
+    public ArrayList<Long> cycle_nanos = new ArrayList<>();         // time spent on detection in each cycle
+    public long checks = 0;                                         // # of detection runs
+
+    private int[][] claims;             // current allocation for all tasks (shared with the simulation)
+    private BitSet[] holders;           // holders[r] = tasks holding any units of resource r
+    private int[] waiting_resource;     // resource each blocked task waits for (-1 if the task isn't blocked)
+    private int[] waiting_amount;       // amount each blocked task waits for
+    private boolean[] reported;         // true once a task has been part of a reported deadlock (until it unblocks)
+
+    private BitSet visited;             // scratch space for detection
+    private BitSet outside;             // scratch space: holders of a resource outside the knot
+    private int[] stack;
+    private long nanos = 0;             // detection time in the current cycle
+
+
+    // constructor //
+    public WaitForGraph(int[][] claims, int num_resources){
+        this.claims = claims;
+        this.holders = new BitSet[num_resources];
+        for(int r=0; r<num_resources; r++){
+            holders[r] = new BitSet(claims.length);
+        }
+        this.waiting_resource = new int[claims.length];
+        this.waiting_amount = new int[claims.length];
+        this.reported = new boolean[claims.length];
+        for(int i=0; i<claims.length; i++){
+            waiting_resource[i] = -1;
+        }
+        this.visited = new BitSet(claims.length);
+        this.outside = new BitSet(claims.length);
+        this.stack = new int[claims.length];
+    }
+
+
+    // task i received units of resource r (it is no longer waiting)
+    public void grant(int i, int r){
+        holders[r].set(i);
+        unblock(i);
+    }
+
+
+    // task i gave back units of resource r
+    public void release(int i, int r){
+        if(claims[i][r] == 0){
+            holders[r].clear(i);
+        }
+    }
+
+
+    // task i left the system and gave back everything it held
+    public void abort(int i){
+        for(int r=0; r<holders.length; r++){
+            holders[r].clear(i);
+        }
+        unblock(i);
+    }
+
+
+    // task i is no longer waiting (it was granted its request or moved back to the ready queue)
+    public void unblock(int i){
+        waiting_resource[i] = -1;
+        reported[i] = false;
+    }
+
+
+    // task i blocked on a request; look for a deadlock that includes it
+    public void block(int i, int r, int amount, ArrayList<Integer> available, ArrayList<Integer> freed, int cycle){
+        waiting_resource[i] = r;
+        waiting_amount[i] = amount;
+
+        long start = System.nanoTime();
+        checks++;
+        if(isStuck(i, available, freed)){
+            recordDeadlock(available, freed, cycle);
+        }
+        nanos += System.nanoTime() - start;
+    }
+
+
+    // store the detection time of the cycle that just ended
+    public void endCycle(){
+        cycle_nanos.add(nanos);
+        nanos = 0;
+    }
+
+
+    // walk the graph from task i; leaves the tasks reached in visited and returns true if they form a knot of
+    // blocked tasks whose requests can't be granted
+    private boolean isStuck(int i, ArrayList<Integer> available, ArrayList<Integer> freed){
+        visited.clear();
+        visited.set(i);
+        int top = 0;
+        stack[top++] = i;
+
+        while(top > 0){
+            int u = stack[--top];
+            int r = waiting_resource[u];
+
+            // a running task (or a request that fits next cycle) can still make progress
+            if(r < 0 || waiting_amount[u] <= available.get(r) + freed.get(r)){
+                return false;
+            }
+            for(int v = holders[r].nextSetBit(0); v >= 0; v = holders[r].nextSetBit(v+1)){
+                if(!visited.get(v)){
+                    visited.set(v);
+                    stack[top++] = v;
+                }
+            }
+        }
+        return true;
+    }
+
+
+    // add the blocked tasks that only wait on the knot in visited, then report the deadlock if it has new tasks
+    private void recordDeadlock(ArrayList<Integer> available, ArrayList<Integer> freed, int cycle){
+        boolean added = true;
+        while(added){
+            added = false;
+            for(int p=0; p<waiting_resource.length; p++){
+                int r = waiting_resource[p];
+                if(r < 0 || visited.get(p) || waiting_amount[p] <= available.get(r) + freed.get(r)){
+                    continue;
+                }
+                outside.clear();
+                outside.or(holders[r]);
+                outside.andNot(visited);
+                if(outside.isEmpty()){
+                    visited.set(p);
+                    added = true;
+                }
+            }
+        }
+
+        boolean is_new = false;
+        int[] task_ids = new int[visited.cardinality()];
+        int k = 0;
+        for(int u = visited.nextSetBit(0); u >= 0; u = visited.nextSetBit(u+1)){
+            is_new |= !reported[u];
+            reported[u] = true;
+            task_ids[k++] = u+1;
+        }
+        if(is_new){
+            deadlock_cycles.add(cycle);
+            deadlocks.add(task_ids);
+        }
+    }
+
+}